@@ -40,6 +40,16 @@ import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.joining;
 
 public class Commands implements Runnable {
+    // statement has no fusion parameter, its options prefix the SQL (see Statement#parseOptions) so keep them in sync
+    private static final List<String> STATEMENT_OPTIONS = List.of(
+            "`--fetchSize <rows>`: fetch size, overrides the connection one.",
+            "`--maxRows <rows>`: max rows, overrides the connection one.",
+            "`--queryTimeout <seconds>`: query timeout, overrides the connection one.",
+            "`--format <table|csv|json|jsonl>`: output format, `table` (default), `csv`, `json` (array) or `jsonl` (one object per line).",
+            "`--output <file>`: file to write the result to (path can be double quoted), status messages then go to the standard output.",
+            "`--on <connections>`: comma separated connection names or globs (`conn1,shard-*`, optionally quoted) to execute the statement concurrently on, rows are prefixed with the connection name.",
+            "`--timing`: print where the time was spent (connection, tunnel, execute, first row, fetch, render).");
+
     private final Path sourceBase;
 
     public Commands(final Path sourceBase) {
@@ -90,7 +100,9 @@ public class Commands implements Runnable {
                                     "=== Parameters\n" +
                                     "\n" +
                                     (it.parameters().isEmpty() ?
-                                            ("statement".equals(it.name()) && it.parameters().isEmpty() ? "The SQL statement.\n" : "No parameter.\n") :
+                                            ("statement".equals(it.name()) ? STATEMENT_OPTIONS.stream()
+                                                    .map(o -> "* " + o)
+                                                    .collect(joining("\n", "The SQL statement, it can be prefixed with these options:\n\n", "\n")) : "No parameter.\n") :
                                             it.parameters().stream()
                                                     .sorted(comparing(CliCommand.Parameter::cliName))
                                                     .map(p -> "* `" + p.cliName().replace("-.", "--") + "`: " + p.description())
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.stream.Collectors.joining;
+
+// rows are produced (parsed, fetched) in a dedicated thread and grouped in batches sent through a bounded queue
+// to the calling thread which inserts them with JDBC batches, it overlaps reads and database round trips with a bounded memory
+final class BatchInserter {
+    private static final List<List<?>> END = List.of();
+
+    private BatchInserter() {
+        // no-op
+    }
+
+    // returns the number of inserted rows
+    static long insert(final Connection connection, final String table, final List<String> columns,
+                       final Options options, final String producerName, final Producer producer) throws Exception {
+        final var queue = new ArrayBlockingQueue<List<List<?>>>(Math.max(1, options.queueSize()));
+        final var producerError = new AtomicReference<Exception>();
+        final var thread = Thread.ofVirtual()
+                .name(producerName)
+                .start(() -> produce(producer, Math.max(1, options.batchSize()), queue, producerError));
+        try {
+            return write(connection, table, columns, options.commitInterval(), queue, producerError);
+        } finally {
+            thread.interrupt(); // no-op if already done, else unblocks it on failures
+            thread.join();
+        }
+    }
+
+    private static void produce(final Producer producer, final int batchSize,
+                                final BlockingQueue<List<List<?>>> queue, final AtomicReference<Exception> error) {
+        final var batcher = new Batcher(queue, batchSize);
+        try {
+            producer.produce(batcher);
+            batcher.flush();
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return; // consumer failed
+        } catch (final Exception e) {
+            error.set(e);
+        }
+        try {
+            queue.put(END);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long write(final Connection connection, final String table, final List<String> columns, final long commitInterval,
+                              final BlockingQueue<List<List<?>>> queue, final AtomicReference<Exception> producerError) throws SQLException, InterruptedException {
+        final var sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                columns.stream().map(it -> "?").collect(joining(", ")) + ")";
+        final boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        long rows = 0;
+        long uncommitted = 0;
+        try (final var statement = connection.prepareStatement(sql)) {
+            final var types = parameterTypes(statement, columns.size());
+            List<List<?>> batch;
+            while ((batch = queue.take()) != END) {
+                for (final var row : batch) {
+                    for (int i = 0; i < types.length; i++) {
+                        final var value = row.get(i);
+                        if (value == null) {
+                            statement.setNull(i + 1, types[i]);
+                        } else if (value instanceof String) { // let the driver convert text to the column type
+                            statement.setObject(i + 1, value, types[i]);
+                        } else {
+                            statement.setObject(i + 1, value);
+                        }
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                rows += batch.size();
+                uncommitted += batch.size();
+                if (commitInterval > 0 && uncommitted >= commitInterval) {
+                    connection.commit();
+                    uncommitted = 0;
+                }
+            }
+            if (producerError.get() != null) {
+                throw new IllegalStateException("Can't read rows: " + producerError.get().getMessage(), producerError.get());
+            }
+            connection.commit();
+            return rows;
+        } catch (final SQLException | RuntimeException | InterruptedException e) {
+            try {
+                connection.rollback();
+            } catch (final SQLException re) {
+                e.addSuppressed(re);
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static int[] parameterTypes(final PreparedStatement statement, final int count) {
+        final var types = new int[count];
+        try {
+            final var metaData = statement.getParameterMetaData();
+            for (int i = 0; i < count; i++) {
+                types[i] = metaData.getParameterType(i + 1);
+            }
+        } catch (final SQLException e) { // not supported by all drivers, send text
+            for (int i = 0; i < count; i++) {
+                types[i] = Types.VARCHAR;
+            }
+        }
+        return types;
+    }
+
+    /**
+     * @param batchSize      number of rows sent in a single JDBC batch.
+     * @param commitInterval number of rows after which the transaction is committed, {@code <= 0} to commit once at the end.
+     * @param queueSize      number of batches buffered between the producer and the database writer.
+     */
+    record Options(int batchSize, long commitInterval, int queueSize) {
+    }
+
+    @FunctionalInterface
+    interface Producer {
+        void produce(Sink sink) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Sink {
+        void accept(List<?> row) throws InterruptedException;
+    }
+
+    private static class Batcher implements Sink {
+        private final BlockingQueue<List<List<?>>> queue;
+        private final int batchSize;
+        private List<List<?>> batch;
+
+        private Batcher(final BlockingQueue<List<List<?>>> queue, final int batchSize) {
+            this.queue = queue;
+            this.batchSize = batchSize;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        @Override
+        public void accept(final List<?> row) throws InterruptedException {
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                queue.put(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        private void flush() throws InterruptedException {
+            if (!batch.isEmpty()) {
+                queue.put(batch);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.fusion.framework.build.api.cli.Command;
+import io.yupiik.fusion.framework.build.api.configuration.Property;
+import io.yupiik.fusion.framework.build.api.configuration.RootConfiguration;
+import io.yupiik.jdbcsh.command.error.CommandExecutionException;
+import io.yupiik.jdbcsh.io.StdIO;
+import io.yupiik.jdbcsh.service.State;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+@Command(name = "copy-in", description = "Stream a local file to a PostgreSQL `COPY ... FROM STDIN`, much faster than inserting rows one by one. Files ending with `.gz` are decompressed on the fly.")
+public class CopyIn implements Runnable {
+    private final Conf conf;
+    private final StdIO io;
+    private final State state;
+
+    public CopyIn(final Conf conf, final StdIO io, final State state) {
+        this.conf = conf;
+        this.io = io;
+        this.state = state;
+    }
+
+    @Override
+    public void run() {
+        if (!state.hasConnection()) {
+            throw new IllegalStateException("No connection set, ensure to call `set-connection --name $connection_name`.");
+        }
+        if (conf.table() == null || conf.table().isBlank()) {
+            throw new IllegalArgumentException("No table set, ensure to pass `--table my_table` or `--table \"my_table(col1, col2)\"`.");
+        }
+        if (conf.from() == null || conf.from().isBlank()) {
+            throw new IllegalArgumentException("No input file set, ensure to pass `--from /path/to/file`.");
+        }
+
+        final var path = Path.of(conf.from());
+        final var sql = toSql(conf.table(), conf.options());
+        final long start = System.nanoTime();
+        final long rows;
+        final long size;
+        final long read;
+        try (final var connectionHolder = state.connection();
+             final var in = new CountingInputStream(open(path))) {
+            size = Files.size(path);
+            rows = CopyOut.copyManager(connectionHolder.connection(), "copy-in").copyIn(sql, in, conf.bufferSize());
+            read = in.count;
+        } catch (final Exception e) {
+            throw new CommandExecutionException(e);
+        }
+
+        final long duration = System.nanoTime() - start;
+        final double seconds = Math.max(duration, 1) / 1_000_000_000.;
+        io.stdout().println(String.format(Locale.ROOT,
+                "Copied %d rows from '%s' in %dms (%.0f rows/s, %.1f MB/s, %d bytes read)",
+                rows, conf.from(), duration / 1_000_000, rows / seconds, read / (1024. * 1024) / seconds, size));
+    }
+
+    private InputStream open(final Path path) throws IOException {
+        final var in = Channels.newInputStream(FileChannel.open(path, READ)); // copyIn reads by bufferSize chunks
+        return path.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, conf.bufferSize()) : in;
+    }
+
+    // counts what is sent to the database (decompressed data for .gz files), the file size is reported apart
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(final InputStream delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = super.read();
+            if (value >= 0) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    // a COPY statement is used as is, anything else is considered as a table (with optional columns)
+    static String toSql(final String table, final String options) {
+        final var value = table.strip();
+        if (value.toLowerCase(Locale.ROOT).startsWith("copy ")) {
+            return value;
+        }
+        return "COPY " + value + " FROM STDIN" + (options == null || options.isBlank() ? "" : " WITH (" + options + ')');
+    }
+
+    @RootConfiguration("-")
+    public record Conf(
+            @Property(documentation = "Target: a `COPY ... FROM STDIN` statement used as is or a table name with optional columns (`my_table(col1, col2)`).") String table,
+            @Property(documentation = "Input file.") String from,
+            @Property(documentation = "`COPY` options used when `table` is not a `COPY` statement.", defaultValue = "\"FORMAT csv, HEADER\"") String options,
+            @Property(documentation = "Size of the chunks sent to the database.", defaultValue = "1048576") int bufferSize) {
+    }
+}
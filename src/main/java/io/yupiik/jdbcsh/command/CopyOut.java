@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.fusion.framework.build.api.cli.Command;
+import io.yupiik.fusion.framework.build.api.configuration.Property;
+import io.yupiik.fusion.framework.build.api.configuration.RootConfiguration;
+import io.yupiik.jdbcsh.command.error.CommandExecutionException;
+import io.yupiik.jdbcsh.io.FileChannelOutputStream;
+import io.yupiik.jdbcsh.io.StdIO;
+import io.yupiik.jdbcsh.service.State;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+@Command(name = "copy-out", description = "Stream a PostgreSQL `COPY ... TO STDOUT` to a local file, much faster than selecting rows for large tables.")
+public class CopyOut implements Runnable {
+    private final Conf conf;
+    private final StdIO io;
+    private final State state;
+
+    public CopyOut(final Conf conf, final StdIO io, final State state) {
+        this.conf = conf;
+        this.io = io;
+        this.state = state;
+    }
+
+    @Override
+    public void run() {
+        if (!state.hasConnection()) {
+            throw new IllegalStateException("No connection set, ensure to call `set-connection --name $connection_name`.");
+        }
+        if (conf.query() == null || conf.query().isBlank()) {
+            throw new IllegalArgumentException("No query set, ensure to pass `--query \"select ...\"` or `--query my_table`.");
+        }
+        if (conf.to() == null || conf.to().isBlank()) {
+            throw new IllegalArgumentException("No output file set, ensure to pass `--to /path/to/file`.");
+        }
+
+        final var sql = toSql(state.findByAlias(conf.query()).orElse(conf.query()), conf.options());
+        final long start = System.nanoTime();
+        final long rows;
+        final FileChannelOutputStream file;
+        try (final var connectionHolder = state.connection();
+             final var out = new FileChannelOutputStream(Path.of(conf.to()), conf.bufferSize(), conf.gzip(), Deflater.DEFAULT_COMPRESSION)) {
+            file = out;
+            rows = copyManager(connectionHolder.connection(), "copy-out").copyOut(sql, out);
+        } catch (final Exception e) {
+            throw new CommandExecutionException(e);
+        }
+
+        final long duration = System.nanoTime() - start;
+        final double seconds = Math.max(duration, 1) / 1_000_000_000.;
+        io.stdout().println(String.format(Locale.ROOT,
+                "Copied %d rows to '%s' in %dms (%.0f rows/s, %.1f MB/s, %d bytes written)",
+                rows, conf.to(), duration / 1_000_000, rows / seconds, file.count() / (1024. * 1024) / seconds, file.written()));
+    }
+
+    // a COPY statement is used as is, a query is wrapped and anything else is considered as a table name
+    static String toSql(final String query, final String options) {
+        final var value = query.strip();
+        final var lowerCase = value.toLowerCase(Locale.ROOT);
+        if (lowerCase.startsWith("copy ")) {
+            return value;
+        }
+        final var source = lowerCase.startsWith("select ") || lowerCase.startsWith("with ") || lowerCase.startsWith("values ") ?
+                '(' + value + ')' : value;
+        return "COPY " + source + " TO STDOUT" + (options == null || options.isBlank() ? "" : " WITH (" + options + ')');
+    }
+
+    static CopyManager copyManager(final Connection connection, final String command) throws SQLException {
+        if (!connection.isWrapperFor(PGConnection.class)) {
+            throw new IllegalStateException("`" + command + "` requires a PostgreSQL connection.");
+        }
+        return connection.unwrap(PGConnection.class).getCopyAPI();
+    }
+
+    @RootConfiguration("-")
+    public record Conf(
+            @Property(documentation = "What to copy: a `COPY ... TO STDOUT` statement used as is, a query (`select ...`) or a table name. It can be a statement alias.") String query,
+            @Property(documentation = "Output file.") String to,
+            @Property(documentation = "`COPY` options used when `query` is not a `COPY` statement.", defaultValue = "\"FORMAT csv, HEADER\"") String options,
+            @Property(documentation = "Should the output be gzip compressed.", defaultValue = "false") boolean gzip,
+            @Property(documentation = "Size of the direct buffer used to write the file.", defaultValue = "1048576") int bufferSize) {
+    }
+}
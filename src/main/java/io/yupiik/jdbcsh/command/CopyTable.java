@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.fusion.framework.build.api.cli.Command;
+import io.yupiik.fusion.framework.build.api.configuration.Property;
+import io.yupiik.fusion.framework.build.api.configuration.RootConfiguration;
+import io.yupiik.jdbcsh.command.error.CommandExecutionException;
+import io.yupiik.jdbcsh.configuration.JDBCConnection;
+import io.yupiik.jdbcsh.io.StdIO;
+import io.yupiik.jdbcsh.service.ConnectionRegistry;
+import io.yupiik.jdbcsh.service.State;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+@Command(name = "copy-table", description = "Copy the rows of a query or a table from a connection to a table of another connection, rows are fetched in a reader thread while batches are inserted in the target database.")
+public class CopyTable implements Runnable {
+    private final Conf conf;
+    private final StdIO io;
+    private final State state;
+    private final ConnectionRegistry registry;
+
+    public CopyTable(final Conf conf, final ConnectionRegistry registry, final StdIO io, final State state) {
+        this.conf = conf;
+        this.registry = registry;
+        this.io = io;
+        this.state = state;
+    }
+
+    @Override
+    public void run() {
+        if (conf.query() == null || conf.query().isBlank()) {
+            throw new IllegalArgumentException("No query set, ensure to pass `--query \"select ...\"` or `--query my_table`.");
+        }
+        final var source = conf.from() == null || conf.from().isBlank() ? state.connectionConfiguration() : find(conf.from());
+        if (source == null) {
+            throw new IllegalStateException("No source connection, ensure to pass `--from $connection_name` or to call `set-connection --name $connection_name`.");
+        }
+        if (conf.to() == null || conf.to().isBlank()) {
+            throw new IllegalArgumentException("No target connection set, ensure to pass `--to $connection_name`.");
+        }
+        final var target = find(conf.to());
+
+        final var query = state.findByAlias(conf.query()).orElse(conf.query()).strip();
+        final boolean tableName = query.chars().noneMatch(Character::isWhitespace);
+        final var sql = tableName ? "SELECT * FROM " + query : query;
+        final var table = conf.table() != null && !conf.table().isBlank() ? conf.table() : (tableName ? query : null);
+        if (table == null) {
+            throw new IllegalArgumentException("No target table set, ensure to pass `--table my_table`.");
+        }
+
+        final long start = System.nanoTime();
+        final long rows;
+        // the target is never the current (persistent) connection: the reader thread walks the source cursor while
+        // batches are committed on the target so both must be distinct physical connections, even when `from` and `to` are the same
+        try (final var sourceConnection = state.connection(source);
+             final var targetConnection = state.dedicatedConnection(target)) {
+            rows = Queries.execute(state, sourceConnection.connection(), conf.fetchSize(), 0, 0, stmt -> {
+                if (!stmt.execute(sql)) {
+                    throw new IllegalArgumentException("Query didn't return any result: '" + sql + "'");
+                }
+                try (final var rset = stmt.getResultSet()) {
+                    final var columns = conf.columns() != null && !conf.columns().isBlank() ?
+                            Stream.of(conf.columns().split(",")).map(String::strip).filter(it -> !it.isBlank()).toList() :
+                            Queries.headers(rset.getMetaData());
+                    final int columnCount = rset.getMetaData().getColumnCount();
+                    if (columns.size() != columnCount) {
+                        throw new IllegalArgumentException("Query returns " + columnCount + " columns but " + columns.size() + " are set.");
+                    }
+                    try {
+                        return BatchInserter.insert(
+                                targetConnection.connection(), table, columns,
+                                new BatchInserter.Options(conf.batchSize(), conf.commitInterval(), conf.queueSize()),
+                                CopyTable.class.getName() + "-reader", sink -> {
+                                    while (rset.next()) {
+                                        sink.accept(Queries.row(rset, columnCount));
+                                    }
+                                });
+                    } catch (final SQLException | IOException | RuntimeException e) {
+                        throw e;
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Copy interrupted.");
+                    } catch (final Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        } catch (final Exception e) {
+            throw new CommandExecutionException(e);
+        }
+
+        final long duration = System.nanoTime() - start;
+        final double seconds = Math.max(duration, 1) / 1_000_000_000.;
+        io.stdout().println(String.format(Locale.ROOT,
+                "Copied %d rows from '%s' to '%s' (%s) in %dms (%.0f rows/s)",
+                rows, source.name(), target.name(), table, duration / 1_000_000, rows / seconds));
+    }
+
+    private JDBCConnection find(final String name) {
+        final var connection = registry.getConnections().get(name);
+        if (connection == null) {
+            throw new IllegalArgumentException("No connection '" + name + "' found.");
+        }
+        return connection;
+    }
+
+    @RootConfiguration("-")
+    public record Conf(
+            @Property(documentation = "Name of the source connection, the current one if not set.") String from,
+            @Property(documentation = "Name of the target connection.") String to,
+            @Property(documentation = "Query to read rows from the source connection or a table name. It can be a statement alias.") String query,
+            @Property(documentation = "Target table, defaults to `query` when it is a table name.") String table,
+            @Property(documentation = "Comma separated list of target columns matching the query ones, if not set the query column names are used.") String columns,
+            @Property(documentation = "Source statement fetch size, enables to stream large results with most drivers.", defaultValue = "10000") int fetchSize,
+            @Property(documentation = "Number of rows sent in a single JDBC batch.", defaultValue = "1000") int batchSize,
+            @Property(documentation = "Number of rows after which the target transaction is committed, if `<= 0` a single commit is done at the end.", defaultValue = "10000") int commitInterval,
+            @Property(documentation = "Number of fetched batches buffered between the reader and the target database writer.", defaultValue = "8") int queueSize) {
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.fusion.framework.build.api.cli.Command;
+import io.yupiik.fusion.framework.build.api.configuration.Property;
+import io.yupiik.fusion.framework.build.api.configuration.RootConfiguration;
+import io.yupiik.fusion.json.JsonMapper;
+import io.yupiik.jdbcsh.command.error.CommandExecutionException;
+import io.yupiik.jdbcsh.io.ChunkedWriter;
+import io.yupiik.jdbcsh.io.FileChannelOutputStream;
+import io.yupiik.jdbcsh.io.StdIO;
+import io.yupiik.jdbcsh.service.State;
+import io.yupiik.jdbcsh.table.RowFormatter;
+import io.yupiik.jdbcsh.table.TableFormatter;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@Command(name = "export", description = "Execute a query and write its results to a file (CSV by default) through large direct buffers, optionally gzip compressed.")
+public class Export implements Runnable {
+    private final Conf conf;
+    private final StdIO io;
+    private final State state;
+    private final JsonMapper jsonMapper;
+
+    public Export(final Conf conf, final StdIO io, final State state, final JsonMapper jsonMapper) {
+        this.conf = conf;
+        this.io = io;
+        this.state = state;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @Override
+    public void run() {
+        if (!state.hasConnection()) {
+            throw new IllegalStateException("No connection set, ensure to call `set-connection --name $connection_name`.");
+        }
+        if (conf.query() == null || conf.query().isBlank()) {
+            throw new IllegalArgumentException("No query set, ensure to pass `--query \"select ...\"`.");
+        }
+        if (conf.to() == null || conf.to().isBlank()) {
+            throw new IllegalArgumentException("No output file set, ensure to pass `--to /path/to/file`.");
+        }
+
+        final var sql = state.findByAlias(conf.query()).orElse(conf.query());
+        final var current = state.tableOptions();
+        final var tableOptions = new TableFormatter.TableOptions(current.transpose(), current.lineSeparator(), current.lookAheadRows(), conf.format(), conf.to());
+        final var jdbcConnection = state.connectionConfiguration();
+        final int fetchSize = conf.fetchSize() > 0 ? conf.fetchSize() : jdbcConnection.fetchSize();
+
+        final long start = System.nanoTime();
+        final Result result;
+        try {
+            result = conf.parallelism() > 1 && conf.splitBy() != null && !conf.splitBy().isBlank() ?
+                    new ParallelExport(state, jsonMapper, conf, sql, fetchSize).run() :
+                    export(sql, tableOptions, fetchSize);
+        } catch (final Exception e) {
+            throw new CommandExecutionException(e);
+        }
+
+        final long duration = System.nanoTime() - start;
+        final double seconds = Math.max(duration, 1) / 1_000_000_000.;
+        io.stdout().println(String.format(Locale.ROOT,
+                "Exported %d rows to '%s' in %dms (%.0f rows/s, %.1f MB/s, %d bytes written%s)",
+                result.rows(), conf.to(), duration / 1_000_000, result.rows() / seconds,
+                result.count() / (1024. * 1024) / seconds, result.written(),
+                conf.gzip() ? ", " + result.count() + " bytes before compression" : ""));
+    }
+
+    private Result export(final String sql, final TableFormatter.TableOptions tableOptions, final int fetchSize) throws Exception {
+        final var jdbcConnection = state.connectionConfiguration();
+        try (final var connectionHolder = state.connection()) {
+            return Queries.execute(state, connectionHolder.connection(), fetchSize, jdbcConnection.maxRows(), jdbcConnection.queryTimeout(), stmt -> {
+                if (!stmt.execute(sql)) {
+                    throw new IllegalArgumentException("Query didn't return any result: '" + sql + "'");
+                }
+                try (final var rset = stmt.getResultSet();
+                     final var file = new FileChannelOutputStream(Path.of(conf.to()), conf.bufferSize(), conf.gzip(), conf.compressionLevel());
+                     final var out = new ChunkedWriter(file, UTF_8, 256 * 1024);
+                     final var formatter = RowFormatter.of(Queries.headers(rset.getMetaData()), tableOptions, jsonMapper, out)) {
+                    final long rows = Queries.write(rset, formatter);
+                    formatter.close();
+                    out.close();
+                    file.close(); // counters are final once the stream is closed
+                    return new Result(rows, file.count(), file.written());
+                }
+            });
+        }
+    }
+
+    @RootConfiguration("-")
+    public record Conf(
+            @Property(documentation = "Query to export, it can be a statement alias.") String query,
+            @Property(documentation = "Output file.") String to,
+            @Property(documentation = "Output format (`csv`, `json`, `jsonl` or `table`).", defaultValue = "\"csv\"") String format,
+            @Property(documentation = "Should the output be gzip compressed.", defaultValue = "false") boolean gzip,
+            @Property(documentation = "Deflater compression level (`0`-`9`, `-1` for the default one) when `gzip` is enabled.", defaultValue = "-1") int compressionLevel,
+            @Property(documentation = "Size of the direct buffer used to write the file, the file channel only gets writes of this size.", defaultValue = "1048576") int bufferSize,
+            @Property(documentation = "Statement fetch size, if `<= 0` the connection one is used. A positive value enables to stream large results with most drivers.", defaultValue = "10000") int fetchSize,
+            @Property(documentation = "Numeric column (primary key for example) used to split the query in ranges exported concurrently when `parallelism > 1`. Only `csv` and `jsonl` formats are supported in this mode.") String splitBy,
+            @Property(documentation = "Number of ranges exported concurrently, each on its own connection (borrowed from the pool if configured).", defaultValue = "1") int parallelism,
+            @Property(documentation = "Number of ranges the `splitBy` column values are split into, if `<= 0` it is `4 * parallelism`.", defaultValue = "0") int chunks,
+            @Property(documentation = "Should parallel exports keep the `splitBy` order, ranges are then written to part files concatenated at the end, else rows are written as soon as they are fetched.", defaultValue = "true") boolean ordered) {
+    }
+
+    record Result(long rows, long count, long written) {
+    }
+}
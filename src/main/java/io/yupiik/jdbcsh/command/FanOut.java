@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.fusion.json.JsonMapper;
+import io.yupiik.jdbcsh.configuration.JDBCConnection;
+import io.yupiik.jdbcsh.io.StdIO;
+import io.yupiik.jdbcsh.service.State;
+import io.yupiik.jdbcsh.table.RowFormatter;
+
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// executes a statement concurrently on several connections (one virtual thread each),
+// rows are tagged with the connection name and merged in a single output as soon as they are fetched
+final class FanOut {
+    private final State state;
+    private final JsonMapper jsonMapper;
+    private final StdIO io;
+    private final PrintStream status;
+
+    FanOut(final State state, final JsonMapper jsonMapper, final StdIO io, final PrintStream status) {
+        this.state = state;
+        this.jsonMapper = jsonMapper;
+        this.io = io;
+        this.status = status;
+    }
+
+    // returns the number of merged rows
+    long execute(final List<JDBCConnection> connections, final String sql, final Statement.Options options, final Appendable out) throws Exception {
+        final var queue = new ArrayBlockingQueue<Event>(1024);
+        final var threads = new ArrayList<Thread>(connections.size());
+        for (final var connection : connections) {
+            threads.add(Thread.ofVirtual()
+                    .name(FanOut.class.getName() + "-" + connection.name())
+                    .start(() -> produce(connection, sql, options, queue)));
+        }
+
+        final var failures = new LinkedHashMap<String, Exception>();
+        final var rejected = new HashSet<String>();
+        RowFormatter formatter = null;
+        List<String> headers = null;
+        int remaining = connections.size();
+        long rows = 0;
+        boolean complete = false;
+        try {
+            while (remaining > 0) {
+                switch (queue.take()) {
+                    case Headers h -> {
+                        if (formatter == null) {
+                            headers = h.headers();
+                            final var allHeaders = new ArrayList<String>(headers.size() + 1);
+                            allHeaders.add("connection");
+                            allHeaders.addAll(headers);
+                            formatter = RowFormatter.of(allHeaders, options.tableOptions(), jsonMapper, out);
+                        } else if (h.headers().size() != headers.size()) { // can't be merged
+                            rejected.add(h.connection());
+                            failures.put(h.connection(), new IllegalStateException(
+                                    "Statement returned " + h.headers().size() + " columns on '" + h.connection() + "' instead of " + headers.size()));
+                        }
+                    }
+                    case Row r -> {
+                        if (!rejected.contains(r.connection())) {
+                            final var row = new ArrayList<>(r.values().size() + 1);
+                            row.add(r.connection());
+                            row.addAll(r.values());
+                            formatter.add(row);
+                            rows++;
+                        }
+                    }
+                    case Done d -> {
+                        remaining--;
+                        if (d.error() != null) {
+                            failures.putIfAbsent(d.connection(), d.error());
+                        } else if (!d.hasResult()) {
+                            status.println("Statement executed on '" + d.connection() + "', it didn't return anything.");
+                        }
+                    }
+                }
+            }
+            complete = true;
+        } finally {
+            if (formatter != null) {
+                if (!complete) {
+                    formatter.abort();
+                }
+                formatter.close();
+            }
+            for (final var thread : threads) { // only needed on failures (producers blocked on a full queue)
+                thread.interrupt();
+                thread.join();
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            failures.forEach((name, error) -> io.stderr().println("Statement failed on '" + name + "': " + error.getMessage()));
+            final var error = new IllegalStateException("Statement failed on " + failures.keySet());
+            failures.values().forEach(error::addSuppressed);
+            throw error;
+        }
+        return rows;
+    }
+
+    private void produce(final JDBCConnection connection, final String sql, final Statement.Options options, final BlockingQueue<Event> queue) {
+        final var name = connection.name();
+        Exception error = null;
+        boolean hasResult = false;
+        try (final var holder = state.dedicatedConnection(connection)) {
+            hasResult = Queries.execute(
+                    state, holder.connection(), options.fetchSize(connection), options.maxRows(connection), options.queryTimeout(connection),
+                    stmt -> {
+                        if (!stmt.execute(sql)) {
+                            return false;
+                        }
+                        try (final var rset = stmt.getResultSet()) {
+                            final var headers = Queries.headers(rset.getMetaData());
+                            put(queue, new Headers(name, headers));
+                            while (rset.next()) {
+                                put(queue, new Row(name, Queries.row(rset, headers.size())));
+                            }
+                        }
+                        return true;
+                    });
+        } catch (final InterruptedIOException ie) {
+            return; // consumer failed
+        } catch (final Exception e) {
+            error = e;
+        }
+        try {
+            queue.put(new Done(name, error, hasResult));
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void put(final BlockingQueue<Event> queue, final Event event) throws InterruptedIOException {
+        try {
+            queue.put(event);
+        } catch (final InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing a row.");
+        }
+    }
+
+    private sealed interface Event permits Headers, Row, Done {
+    }
+
+    private record Headers(String connection, List<String> headers) implements Event {
+    }
+
+    private record Row(String connection, List<Object> values) implements Event {
+    }
+
+    private record Done(String connection, Exception error, boolean hasResult) implements Event {
+    }
+}
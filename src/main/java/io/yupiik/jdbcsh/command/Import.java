@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.fusion.framework.build.api.cli.Command;
+import io.yupiik.fusion.framework.build.api.configuration.Property;
+import io.yupiik.fusion.framework.build.api.configuration.RootConfiguration;
+import io.yupiik.jdbcsh.command.error.CommandExecutionException;
+import io.yupiik.jdbcsh.io.StdIO;
+import io.yupiik.jdbcsh.service.State;
+import io.yupiik.jdbcsh.table.CsvParser;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+@Command(name = "import", description = "Import a CSV (RFC 4180) file in a table using JDBC batches, the file is parsed in a reader thread while batches are sent to the database. Files ending with `.gz` are decompressed on the fly.")
+public class Import implements Runnable {
+    private final Conf conf;
+    private final StdIO io;
+    private final State state;
+
+    public Import(final Conf conf, final StdIO io, final State state) {
+        this.conf = conf;
+        this.io = io;
+        this.state = state;
+    }
+
+    @Override
+    public void run() {
+        if (!state.hasConnection()) {
+            throw new IllegalStateException("No connection set, ensure to call `set-connection --name $connection_name`.");
+        }
+        if (conf.table() == null || conf.table().isBlank()) {
+            throw new IllegalArgumentException("No table set, ensure to pass `--table my_table`.");
+        }
+        if (conf.from() == null || conf.from().isBlank()) {
+            throw new IllegalArgumentException("No input file set, ensure to pass `--from /path/to/file.csv`.");
+        }
+
+        final var path = Path.of(conf.from());
+        final long start = System.nanoTime();
+        final long rows;
+        try (final var parser = new CsvParser(open(path));
+             final var connectionHolder = state.connection()) {
+            final var columns = conf.columns() != null && !conf.columns().isBlank() ?
+                    Stream.of(conf.columns().split(",")).map(String::strip).filter(it -> !it.isBlank()).toList() :
+                    null;
+            final var header = conf.header() ? parser.next() : null;
+            final var actualColumns = columns != null ? columns : header;
+            if (actualColumns == null || actualColumns.isEmpty()) {
+                throw new IllegalArgumentException("No column to import, set `--columns` or use a file with a header line.");
+            }
+
+            rows = BatchInserter.insert(
+                    connectionHolder.connection(), conf.table(), actualColumns,
+                    new BatchInserter.Options(conf.batchSize(), conf.commitInterval(), conf.queueSize()),
+                    Import.class.getName() + "-reader", sink -> read(parser, actualColumns.size(), sink));
+        } catch (final Exception e) {
+            throw new CommandExecutionException(e);
+        }
+
+        final long duration = System.nanoTime() - start;
+        final double seconds = Math.max(duration, 1) / 1_000_000_000.;
+        final double megaBytes = size(path) / (1024. * 1024);
+        io.stdout().println(String.format(Locale.ROOT,
+                "Imported %d rows into '%s' in %dms (%.0f rows/s, %.1f MB/s)",
+                rows, conf.table(), duration / 1_000_000, rows / seconds, megaBytes / seconds));
+    }
+
+    private void read(final CsvParser parser, final int columns, final BatchInserter.Sink sink) throws IOException, InterruptedException {
+        List<String> row;
+        while (true) {
+            final long line = parser.line();
+            if ((row = parser.next()) == null) {
+                return;
+            }
+            if (row.size() != columns) {
+                if (row.size() == 1 && row.get(0).isEmpty()) { // blank line
+                    continue;
+                }
+                throw new IllegalArgumentException("Line " + line + " has " + row.size() + " values but " + columns + " columns are imported.");
+            }
+            row.replaceAll(value -> value.isEmpty() ? null : value);
+            sink.accept(row);
+        }
+    }
+
+    private InputStreamReader open(final Path path) throws IOException {
+        final var in = Channels.newInputStream(FileChannel.open(path, READ));
+        return new InputStreamReader(path.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 64 * 1024) : in, UTF_8);
+    }
+
+    private long size(final Path path) {
+        try {
+            return Files.size(path);
+        } catch (final IOException e) {
+            return 0;
+        }
+    }
+
+    @RootConfiguration("-")
+    public record Conf(
+            @Property(documentation = "Table to import the rows into.") String table,
+            @Property(documentation = "CSV file to import.") String from,
+            @Property(documentation = "Comma separated list of the table columns matching the CSV ones, if not set the header line is used.") String columns,
+            @Property(documentation = "Is the first line of the file a header line.", defaultValue = "true") boolean header,
+            @Property(documentation = "Number of rows sent in a single JDBC batch.", defaultValue = "1000") int batchSize,
+            @Property(documentation = "Number of rows after which the transaction is committed, if `<= 0` a single commit is done at the end.", defaultValue = "10000") int commitInterval,
+            @Property(documentation = "Number of parsed batches buffered between the reader and the database writer.", defaultValue = "8") int queueSize) {
+    }
+}
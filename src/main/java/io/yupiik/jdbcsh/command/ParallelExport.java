@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.fusion.json.JsonMapper;
+import io.yupiik.jdbcsh.configuration.JDBCConnection;
+import io.yupiik.jdbcsh.io.ChunkedWriter;
+import io.yupiik.jdbcsh.io.FileChannelOutputStream;
+import io.yupiik.jdbcsh.service.State;
+import io.yupiik.jdbcsh.table.CsvFormatter;
+import io.yupiik.jdbcsh.table.JsonFormatter;
+import io.yupiik.jdbcsh.table.RowFormatter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// splits a query on a numeric column range (min/max are queried first) and exports the ranges concurrently,
+// each worker uses its own connection, ordered exports write a part file per range concatenated at the end,
+// unordered ones append row-aligned chunks to the shared output
+final class ParallelExport {
+    private static final int CHUNK = 64 * 1024;
+
+    private final State state;
+    private final JDBCConnection connection;
+    private final JsonMapper jsonMapper;
+    private final Export.Conf conf;
+    private final String source;
+    private final int fetchSize;
+
+    ParallelExport(final State state, final JsonMapper jsonMapper, final Export.Conf conf, final String sql, final int fetchSize) {
+        this.state = state;
+        this.connection = state.connectionConfiguration();
+        this.jsonMapper = jsonMapper;
+        this.conf = conf;
+        this.source = sql.strip().chars().noneMatch(Character::isWhitespace) ? sql.strip() : '(' + sql + ") jdbcsh_split";
+        this.fetchSize = fetchSize;
+        if (!"csv".equals(conf.format()) && !"jsonl".equals(conf.format())) {
+            throw new IllegalArgumentException("Parallel exports only support `csv` and `jsonl` formats.");
+        }
+    }
+
+    Export.Result run() throws Exception {
+        final List<String> headers;
+        final List<String> ranges;
+        try (final var holder = state.connection()) {
+            headers = Queries.execute(state, holder.connection(), 0, 0, connection.queryTimeout(), stmt -> {
+                try (final var rset = stmt.executeQuery("SELECT * FROM " + source + " WHERE 1 = 0")) {
+                    return Queries.headers(rset.getMetaData());
+                }
+            });
+            ranges = Queries.execute(state, holder.connection(), 0, 0, connection.queryTimeout(), stmt -> {
+                try (final var rset = stmt.executeQuery("SELECT MIN(" + conf.splitBy() + "), MAX(" + conf.splitBy() + ") FROM " + source)) {
+                    rset.next();
+                    return ranges(rset.getBigDecimal(1), rset.getBigDecimal(2));
+                }
+            });
+        }
+
+        final var path = Path.of(conf.to());
+        return conf.ordered() ? ordered(path, headers, ranges) : unordered(path, headers, ranges);
+    }
+
+    // half-open ranges between integer boundaries, the first and last ones are open-ended so decimal keys
+    // (or rows inserted meanwhile) always match a range, + rows without key which would be lost else
+    private List<String> ranges(final BigDecimal min, final BigDecimal max) {
+        final var column = conf.splitBy();
+        final var ranges = new ArrayList<String>();
+        if (min != null) {
+            final long low = min.setScale(0, RoundingMode.FLOOR).longValueExact();
+            final long high = max.setScale(0, RoundingMode.FLOOR).longValueExact();
+            final int chunks = conf.chunks() > 0 ? conf.chunks() : conf.parallelism() * 4;
+            final long span = Math.subtractExact(high, low) + 1;
+            final long step = Math.max(1, (span + chunks - 1) / chunks);
+            final var boundaries = new ArrayList<Long>();
+            for (long boundary = low; high - boundary >= step; ) {
+                boundary += step;
+                boundaries.add(boundary);
+            }
+            if (boundaries.isEmpty()) {
+                ranges.add(column + " IS NOT NULL");
+            } else {
+                ranges.add(column + " < " + boundaries.get(0));
+                for (int i = 1; i < boundaries.size(); i++) {
+                    ranges.add(column + " >= " + boundaries.get(i - 1) + " AND " + column + " < " + boundaries.get(i));
+                }
+                ranges.add(column + " >= " + boundaries.get(boundaries.size() - 1));
+            }
+        }
+        ranges.add(column + " IS NULL");
+        return ranges;
+    }
+
+    private Export.Result unordered(final Path path, final List<String> headers, final List<String> ranges) throws Exception {
+        try (final var file = new FileChannelOutputStream(path, conf.bufferSize(), conf.gzip(), conf.compressionLevel());
+             final var out = new ChunkedWriter(file, UTF_8, 256 * 1024)) {
+            if ("csv".equals(conf.format())) {
+                new CsvFormatter(headers, out).close();
+            }
+            final long rows = runWorkers(ranges, (range, index) -> {
+                final var buffer = new StringBuilder(CHUNK * 2);
+                final long count = export(range, headers, buffer, () -> {
+                    if (buffer.length() >= CHUNK) {
+                        append(out, buffer);
+                    }
+                });
+                append(out, buffer);
+                return count;
+            });
+            out.close();
+            file.close();
+            return new Export.Result(rows, file.count(), file.written());
+        }
+    }
+
+    private Export.Result ordered(final Path path, final List<String> headers, final List<String> ranges) throws Exception {
+        final var parts = new ArrayList<Path>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            parts.add(path.resolveSibling(path.getFileName() + ".part" + i));
+        }
+        final var count = new AtomicLong();
+        try {
+            final long rows = runWorkers(ranges, (range, index) -> {
+                try (final var file = new FileChannelOutputStream(parts.get(index), conf.bufferSize(), conf.gzip(), conf.compressionLevel());
+                     final var out = new ChunkedWriter(file, UTF_8, 256 * 1024)) {
+                    final long exported = export(range, headers, out, () -> {
+                    });
+                    out.close();
+                    file.close();
+                    count.addAndGet(file.count());
+                    return exported;
+                }
+            });
+
+            // header then parts in range order, gzip members can be concatenated
+            try (final var file = new FileChannelOutputStream(path, conf.bufferSize(), conf.gzip(), conf.compressionLevel());
+                 final var out = new ChunkedWriter(file, UTF_8, CHUNK)) {
+                if ("csv".equals(conf.format())) {
+                    new CsvFormatter(headers, out).close();
+                }
+                out.close();
+                file.close();
+                count.addAndGet(file.count());
+            }
+            try (final var target = FileChannel.open(path, WRITE, APPEND)) {
+                for (final var part : parts) {
+                    try (final var in = FileChannel.open(part, READ)) {
+                        final long size = in.size();
+                        long position = 0;
+                        while (position < size) {
+                            position += in.transferTo(position, size - position, target);
+                        }
+                    }
+                }
+            }
+            return new Export.Result(rows, count.get(), Files.size(path));
+        } finally {
+            for (final var part : parts) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    private long export(final String range, final List<String> headers, final Appendable out, final Runnable onRow) throws Exception {
+        final var sql = "SELECT * FROM " + source + " WHERE " + range + (conf.ordered() ? " ORDER BY " + conf.splitBy() : "");
+        try (final var holder = state.dedicatedConnection(connection)) { // note: maxRows applies to each range
+            return Queries.execute(state, holder.connection(), fetchSize, connection.maxRows(), connection.queryTimeout(), stmt -> {
+                try (final var rset = stmt.executeQuery(sql);
+                     final var formatter = newFormatter(headers, out)) {
+                    final int columnCount = headers.size();
+                    long rows = 0;
+                    while (rset.next()) {
+                        formatter.add(Queries.row(rset, columnCount));
+                        onRow.run();
+                        rows++;
+                    }
+                    return rows;
+                }
+            });
+        }
+    }
+
+    private RowFormatter newFormatter(final List<String> headers, final Appendable out) {
+        return "csv".equals(conf.format()) ? new CsvFormatter(headers, out, false) : new JsonFormatter(headers, jsonMapper, false, out);
+    }
+
+    // N workers consume the ranges, the first failure stops the others
+    private long runWorkers(final List<String> ranges, final RangeExporter exporter) throws Exception {
+        final var remaining = new ConcurrentLinkedQueue<Integer>();
+        for (int i = 0; i < ranges.size(); i++) {
+            remaining.add(i);
+        }
+        final var rows = new AtomicLong();
+        final var error = new AtomicReference<Exception>();
+        final var workers = new ArrayList<Thread>(conf.parallelism());
+        for (int i = 0; i < conf.parallelism(); i++) {
+            workers.add(Thread.ofVirtual().name(ParallelExport.class.getName() + "-" + i).start(() -> {
+                Integer index;
+                while (error.get() == null && (index = remaining.poll()) != null) {
+                    try {
+                        rows.addAndGet(exporter.export(ranges.get(index), index));
+                    } catch (final Exception e) {
+                        if (!error.compareAndSet(null, e)) {
+                            error.get().addSuppressed(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (final var worker : workers) {
+            worker.join();
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return rows.get();
+    }
+
+    private static void append(final Writer out, final StringBuilder buffer) {
+        synchronized (out) {
+            try {
+                out.append(buffer);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        buffer.setLength(0);
+    }
+
+    @FunctionalInterface
+    private interface RangeExporter {
+        long export(String range, int index) throws Exception;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.jdbcsh.service.State;
+import io.yupiik.jdbcsh.table.RowFormatter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+
+// statement execution and result set reading shared by the commands running queries
+final class Queries {
+    private Queries() {
+        // no-op
+    }
+
+    // the statement is tracked by the state while running to be cancellable (Ctrl+C)
+    static <T> T execute(final State state, final Connection jdbc, final int fetchSize, final int maxRows, final int queryTimeout,
+                         final StatementCallback<T> callback) throws SQLException, IOException {
+        try (final var stmt = jdbc.createStatement()) {
+            final boolean resetAutoCommit = fetchSize > 0 && jdbc.getAutoCommit();
+            if (resetAutoCommit) { // most drivers (postgres in particular) only use a cursor outside of autocommit mode
+                jdbc.setAutoCommit(false);
+            }
+            state.running(stmt);
+            try {
+                if (fetchSize > 0) {
+                    stmt.setFetchSize(fetchSize);
+                }
+                if (maxRows > 0) {
+                    stmt.setMaxRows(maxRows);
+                }
+                if (queryTimeout > 0) {
+                    stmt.setQueryTimeout(queryTimeout);
+                }
+                final var result = callback.apply(stmt);
+                if (resetAutoCommit) {
+                    jdbc.commit();
+                }
+                return result;
+            } catch (final SQLException | IOException | RuntimeException e) {
+                if (resetAutoCommit) {
+                    try {
+                        jdbc.rollback();
+                    } catch (final SQLException re) {
+                        e.addSuppressed(re);
+                    }
+                }
+                throw e;
+            } finally {
+                state.done(stmt);
+                if (resetAutoCommit) {
+                    jdbc.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    static List<String> headers(final ResultSetMetaData metaData) throws SQLException {
+        final int columnCount = metaData.getColumnCount();
+        final var headers = new ArrayList<String>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            headers.add(metaData.getColumnName(i));
+        }
+        return headers;
+    }
+
+    // returns the number of rows
+    static long write(final ResultSet rset, final RowFormatter formatter) throws SQLException {
+        final int columnCount = rset.getMetaData().getColumnCount();
+        long rows = 0;
+        try {
+            while (rset.next()) {
+                formatter.add(row(rset, columnCount));
+                rows++;
+            }
+        } catch (final SQLException | RuntimeException e) {
+            formatter.abort();
+            throw e;
+        }
+        return rows;
+    }
+
+    // values of the current row
+    static List<Object> row(final ResultSet rset, final int columnCount) throws SQLException {
+        final var row = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            row.add(read(rset.getObject(i)));
+        }
+        return row;
+    }
+
+    // large objects are read to be rendered, other values are kept as returned by the driver
+    static Object read(final Object object) {
+        if (object instanceof Reader r) {
+            try (final var reader = r instanceof BufferedReader ? (BufferedReader) r : new BufferedReader(r)) {
+                return reader.lines().collect(joining("\n"));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        if (object instanceof InputStream s) {
+            try (final var in = s) {
+                return new String(in.readAllBytes(), UTF_8);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return object;
+    }
+
+    @FunctionalInterface
+    interface StatementCallback<T> {
+        T apply(Statement statement) throws SQLException, IOException;
+    }
+}
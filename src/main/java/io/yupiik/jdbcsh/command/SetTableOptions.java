@@ -36,13 +36,17 @@ public class SetTableOptions implements Runnable {
 
     @Override
     public void run() {
-        state.setTableOptions(new TableFormatter.TableOptions(conf.transpose(), conf.lineSeparatorChar()));
+        state.setTableOptions(new TableFormatter.TableOptions(
+                conf.transpose(), conf.lineSeparatorChar(), conf.lookAheadRows(), conf.format(), conf.output()));
         io.stdout().println("Switched table options.");
     }
 
     @RootConfiguration("-")
     public record Conf(
             @Property(documentation = "Tables should be transposed, ie the headers are on the first column.", defaultValue = "false") boolean transpose,
-            @Property(documentation = "Header character to separator header line from data lines and create border lines. It will also show record by record (blocks).", defaultValue = "\"-\"") String lineSeparatorChar) {
+            @Property(documentation = "Header character to separator header line from data lines and create border lines. It will also show record by record (blocks).", defaultValue = "\"-\"") String lineSeparatorChar,
+            @Property(documentation = "Number of rows read before rendering the table header, column widths are computed from these rows and reused for next ones which are rendered as soon as they are fetched. A value `<= 0` buffers the whole result before rendering it.", defaultValue = "1000") int lookAheadRows,
+            @Property(documentation = "Output format of the statement results, `table` renders an ASCII table, `csv` writes RFC 4180 lines (headers first), `json` a JSON array of objects and `jsonl` one JSON object per line. Other options only apply to `table` format.", defaultValue = "\"table\"") String format,
+            @Property(documentation = "If set, statement results are written to this file instead of the standard output.") String output) {
     }
 }
@@ -17,118 +17,293 @@ package io.yupiik.jdbcsh.command;
 
 import io.yupiik.fusion.framework.build.api.cli.Command;
 import io.yupiik.fusion.framework.build.api.configuration.RootConfiguration;
+import io.yupiik.fusion.json.JsonMapper;
 import io.yupiik.jdbcsh.command.error.CommandExecutionException;
+import io.yupiik.jdbcsh.configuration.JDBCConnection;
+import io.yupiik.jdbcsh.io.ChunkedWriter;
+import io.yupiik.jdbcsh.io.FileChannelOutputStream;
 import io.yupiik.jdbcsh.io.StdIO;
+import io.yupiik.jdbcsh.jfr.StatementEvent;
 import io.yupiik.jdbcsh.service.CommandExecutor;
+import io.yupiik.jdbcsh.service.ConnectionRegistry;
 import io.yupiik.jdbcsh.service.State;
+import io.yupiik.jdbcsh.table.RowFormatter;
 import io.yupiik.jdbcsh.table.TableFormatter;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.Reader;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
-import java.time.Duration;
-import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.IntStream;
+import java.util.Map;
+import java.util.regex.Pattern;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.time.Instant.now;
-import static java.util.stream.Collectors.joining;
+import static java.util.Optional.ofNullable;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
-@Command(name = "statement", description = "Execute a statement, it is the implicit command and takes the full args as the statement to execute.")
+@Command(name = "statement", description = "Execute a statement, it is the implicit command and takes the full args as the statement to execute. " +
+        "It can start with `--fetchSize`, `--maxRows`, `--queryTimeout`, `--format`, `--output` options, `--timing` to print where the time was spent (connection, tunnel, execute, first row, fetch, render) " +
+        "and `--on conn1,shard-*` (optionally quoted) to execute it concurrently on several connections, rows are then prefixed with the connection name.")
 public class Statement implements Runnable {
+    private static final Pattern OPTION = Pattern.compile(
+            "^--(?:(?<name>fetchSize|maxRows|queryTimeout)\\s+(?<number>\\d+)|format\\s+(?<format>\\w+)|output\\s+(?<output>\"[^\"]*\"|\\S+)|on\\s+(?<on>'[^']*'|\"[^\"]*\"|\\S+)|(?<timing>timing))\\s+");
+
     private final Conf conf;
     private final CommandExecutor.CommandArgs args;
     private final StdIO io;
     private final State state;
+    private final JsonMapper jsonMapper;
+    private final ConnectionRegistry registry;
 
-    public Statement(final Conf conf, final CommandExecutor executor, final StdIO io, final State state) {
+    public Statement(final Conf conf, final CommandExecutor executor, final StdIO io, final State state,
+                     final JsonMapper jsonMapper, final ConnectionRegistry registry) {
         this.conf = conf;
         this.args = executor.currentArgs();
         this.io = io;
         this.state = state;
+        this.jsonMapper = jsonMapper;
+        this.registry = registry;
     }
 
     @Override
     public void run() {
-        if (!state.hasConnection()) {
+        final var options = parseOptions(args.raw().startsWith("statement ") ? args.raw().substring("statement ".length()) : args.raw());
+        if (options.on() == null && !state.hasConnection()) {
             throw new IllegalStateException("No connection set, ensure to call `set-connection --name $connection_name`.");
         }
 
-        // todo: add tuning like fetch-size etc but args.args() is parsed so need to enhanced the input parsing to not loose the raw query
-        final var sql = args.raw().startsWith("statement ") ? args.raw().substring("statement ".length()) : args.raw();
-        final var actualSql = state.findByAlias(sql).orElse(sql);
-
-        final List<List<String>> rows;
-        final var start = now();
-        try (final var connectionHolder = state.connection();
-             final var stmt = connectionHolder.connection().createStatement()) {
-            if (stmt.execute(actualSql)) {
-                try (final var rset = stmt.getResultSet()) {
-                    final var metaData = rset.getMetaData();
-                    final var columnCount = metaData.getColumnCount();
-                    rows = new ArrayList<>();
-                    rows.add(IntStream.rangeClosed(1, columnCount)
-                            .mapToObj(i -> {
-                                try {
-                                    return metaData.getColumnName(i);
-                                } catch (final SQLException e) {
-                                    throw new CommandExecutionException(e);
-                                }
-                            })
-                            .toList());
-                    while (rset.next()) {
-                        rows.add(IntStream.rangeClosed(1, columnCount)
-                                .mapToObj(i -> {
-                                    try {
-                                        return toString(rset.getObject(i));
-                                    } catch (final SQLException e) {
-                                        throw new CommandExecutionException(e);
-                                    }
-                                })
-                                .toList());
-                    }
+        final var alias = state.findByAlias(options.sql());
+        final var actualSql = alias.orElse(options.sql());
+
+        // when results go to stdout in a machine format, keep it clean and report on stderr
+        final var status = options.tableOptions().output() == null && !"table".equals(options.tableOptions().format()) ? io.stderr() : io.stdout();
+        final var timings = newTimings(options);
+        final var event = new StatementEvent();
+        event.begin();
+        long rows = -1;
+        long rendered = 0;
+        boolean success = false;
+        final long start = System.nanoTime();
+        try {
+            if (options.on() != null) {
+                final var connections = connections(options.on());
+                try (final var file = newFile(options.tableOptions());
+                     final var out = newWriter(file)) {
+                    rows = new FanOut(state, jsonMapper, io, status).execute(connections, actualSql, options, out);
+                    rendered = out.count();
                 }
             } else {
-                io.stdout().println("Statement executed, it didn't return anything.");
-                rows = null;
+                final long connectionStart = System.nanoTime();
+                try (final var connectionHolder = state.connection()) {
+                    if (timings != null) {
+                        timings.connected(connectionStart, connectionHolder.tunnelSetupNanos());
+                    }
+                    final var configuration = state.connectionConfiguration();
+                    final var executed = Queries.execute(
+                            state, connectionHolder.connection(),
+                            options.fetchSize(configuration), options.maxRows(configuration), options.queryTimeout(configuration),
+                            stmt -> execute(stmt, actualSql, options.tableOptions(), status, timings));
+                    rows = executed.rows();
+                    rendered = executed.rendered();
+                }
             }
+            success = true;
         } catch (final Exception e) {
             throw new CommandExecutionException(e);
         } finally {
-            final var end = now();
-            io.stdout().println("Statement execution done in " + Duration.between(start, end).toMillis() + "ms");
+            final long duration = System.nanoTime() - start;
+            final var connectionName = options.on() != null ? options.on() : ofNullable(state.connectionConfiguration().name()).orElse("database1");
+            final var aliasName = alias.isPresent() ? options.sql() : null;
+            state.metrics().onStatement(connectionName, aliasName, duration, rows, rendered, success);
+            event.end();
+            if (event.shouldCommit()) {
+                event.connection = connectionName;
+                event.alias = aliasName;
+                event.sqlHash = hash(actualSql);
+                event.rows = rows;
+                event.success = success;
+                event.commit();
+            }
+            if (timings != null) {
+                timings.clearProgress();
+            }
+            status.println("Statement execution done in " + NANOSECONDS.toMillis(duration) + "ms");
+            if (options.timing() && timings != null) {
+                status.println(timings);
+            }
+        }
+    }
+
+    // progress is only reported on an interactive terminal when the rows don't go to it, fan-out has no breakdown
+    private Timings newTimings(final Options options) {
+        if (options.on() != null) {
+            return null;
         }
+        final boolean progress = options.tableOptions().output() != null && System.console() != null;
+        return options.timing() || progress ? new Timings(progress ? io.stderr() : null) : null;
+    }
 
-        if (rows != null) {
-            io.stdout().println(new TableFormatter(rows, state.tableOptions()));
+    // groups the executions of a statement in recordings without exposing the SQL (literals can be sensitive)
+    private String hash(final String sql) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(sql.getBytes(UTF_8)), 0, 8);
+        } catch (final NoSuchAlgorithmException e) {
+            return Integer.toHexString(sql.hashCode());
         }
     }
 
-    private String toString(final Object object) {
-        if (object == null) {
-            return "";
+    private Executed execute(final java.sql.Statement stmt, final String actualSql,
+                         final TableFormatter.TableOptions tableOptions, final PrintStream status,
+                         final Timings timings) throws SQLException, IOException {
+        final long executeStart = System.nanoTime();
+        final boolean hasResultSet = stmt.execute(actualSql);
+        if (timings != null) {
+            timings.executed(executeStart);
         }
-        if (object instanceof Reader r) {
-            try (final var reader = r instanceof BufferedReader ? (BufferedReader) r : new BufferedReader(r)) {
-                return reader.lines().collect(joining("\n"));
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
+        if (hasResultSet) {
+            try (final var rset = stmt.getResultSet();
+                 final var file = newFile(tableOptions);
+                 final var out = newWriter(file)) {
+                long closeStart = 0;
+                final long rows;
+                try (final var formatter = RowFormatter.of(Queries.headers(rset.getMetaData()), tableOptions, jsonMapper, out)) {
+                    if (timings == null) {
+                        rows = Queries.write(rset, formatter);
+                    } else {
+                        rows = timings.write(rset, formatter);
+                        closeStart = System.nanoTime();
+                    }
+                }
+                out.flush();
+                if (timings != null) {
+                    timings.rendered(closeStart);
+                    if (file == null) {
+                        timings.output(out.count(), "chars");
+                    } else {
+                        timings.output(file.count(), "bytes");
+                    }
+                }
+                return new Executed(rows, out.count());
             }
         }
-        if (object instanceof InputStream s) {
-            try (final var in = s) {
-                return new String(in.readAllBytes(), UTF_8);
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
+        status.println("Statement executed, it didn't return anything.");
+        return new Executed(stmt.getUpdateCount(), 0);
+    }
+
+    private FileChannelOutputStream newFile(final TableFormatter.TableOptions tableOptions) throws IOException {
+        return tableOptions.output() == null ? null : new FileChannelOutputStream(Path.of(tableOptions.output()), 1024 * 1024);
+    }
+
+    private ChunkedWriter newWriter(final FileChannelOutputStream file) { // rendered rows are flushed by chunks
+        return file == null ? new ChunkedWriter(io.stdout()) : new ChunkedWriter(file, UTF_8, 256 * 1024);
+    }
+
+    // comma separated names or globs (shard-*), connections are sorted by name for globs
+    private List<JDBCConnection> connections(final String on) {
+        final var connections = new LinkedHashMap<String, JDBCConnection>();
+        for (final var name : on.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            if (name.indexOf('*') >= 0 || name.indexOf('?') >= 0) {
+                final var pattern = glob(name.strip());
+                registry.getConnections().entrySet().stream()
+                        .filter(it -> pattern.matcher(it.getKey()).matches())
+                        .sorted(Map.Entry.comparingByKey())
+                        .forEach(it -> connections.putIfAbsent(it.getKey(), it.getValue()));
+            } else {
+                final var connection = registry.getConnections().get(name.strip());
+                if (connection == null) {
+                    throw new IllegalArgumentException("No connection '" + name.strip() + "' found.");
+                }
+                connections.putIfAbsent(name.strip(), connection);
+            }
+        }
+        if (connections.isEmpty()) {
+            throw new IllegalArgumentException("No connection matches '" + on + "'.");
+        }
+        return List.copyOf(connections.values());
+    }
+
+    private Pattern glob(final String glob) {
+        final var regex = new StringBuilder();
+        for (final char c : glob.toCharArray()) {
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
             }
         }
-        return String.valueOf(object);
+        return Pattern.compile(regex.toString());
+    }
+
+    // options are only read at the beginning of the statement to not conflict with the SQL itself,
+    // numeric ones are -1 when not set to use the connection defaults
+    private Options parseOptions(final String statement) {
+        var sql = statement.strip();
+        int fetchSize = -1;
+        int maxRows = -1;
+        int queryTimeout = -1;
+        String on = null;
+        boolean timing = false;
+        final var tableOptions = state.tableOptions();
+        var format = tableOptions.format();
+        var output = tableOptions.output();
+        var matcher = OPTION.matcher(sql);
+        while (matcher.find()) {
+            if (matcher.group("format") != null) {
+                format = matcher.group("format");
+            } else if (matcher.group("timing") != null) {
+                timing = true;
+            } else if (matcher.group("on") != null) {
+                on = matcher.group("on");
+                if (on.startsWith("'") || on.startsWith("\"")) { // quoted to protect the glob from the shell
+                    on = on.substring(1, on.length() - 1);
+                }
+            } else if (matcher.group("output") != null) {
+                output = matcher.group("output");
+                if (output.startsWith("\"")) {
+                    output = output.substring(1, output.length() - 1);
+                }
+            } else {
+                final int value = Integer.parseInt(matcher.group("number"));
+                switch (matcher.group("name")) {
+                    case "fetchSize" -> fetchSize = value;
+                    case "maxRows" -> maxRows = value;
+                    default -> queryTimeout = value;
+                }
+            }
+            sql = sql.substring(matcher.end());
+            matcher = OPTION.matcher(sql);
+        }
+        return new Options(sql, fetchSize, maxRows, queryTimeout, on, timing, new TableFormatter.TableOptions(
+                tableOptions.transpose(), tableOptions.lineSeparator(), tableOptions.lookAheadRows(), format, output));
     }
 
     @RootConfiguration("statement")
     public record Conf() {
     }
+
+    // rows is the number of fetched rows or the update count, rendered the number of written chars
+    private record Executed(long rows, long rendered) {
+    }
+
+    record Options(String sql, int fetchSize, int maxRows, int queryTimeout, String on, boolean timing, TableFormatter.TableOptions tableOptions) {
+        int fetchSize(final JDBCConnection connection) {
+            return fetchSize >= 0 ? fetchSize : connection.fetchSize();
+        }
+
+        int maxRows(final JDBCConnection connection) {
+            return maxRows >= 0 ? maxRows : connection.maxRows();
+        }
+
+        int queryTimeout(final JDBCConnection connection) {
+            return queryTimeout >= 0 ? queryTimeout : connection.queryTimeout();
+        }
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.fusion.framework.build.api.cli.Command;
+import io.yupiik.fusion.framework.build.api.configuration.Property;
+import io.yupiik.fusion.framework.build.api.configuration.RootConfiguration;
+import io.yupiik.fusion.json.JsonMapper;
+import io.yupiik.jdbcsh.command.error.CommandExecutionException;
+import io.yupiik.jdbcsh.io.ChunkedWriter;
+import io.yupiik.jdbcsh.io.StdIO;
+import io.yupiik.jdbcsh.metrics.ExecutionMetrics;
+import io.yupiik.jdbcsh.service.State;
+import io.yupiik.jdbcsh.table.RowFormatter;
+import io.yupiik.jdbcsh.table.TableFormatter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Command(name = "stats", description = "Show the statement latencies (count, errors, p50/p95/p99/max in milliseconds), rows and rendered chars " +
+        "per connection and statement alias since startup as well as the kubernetes tunnels traffic. It uses the current table format.")
+public class Stats implements Runnable {
+    private final Conf conf;
+    private final StdIO io;
+    private final State state;
+    private final JsonMapper jsonMapper;
+
+    public Stats(final Conf conf, final StdIO io, final State state, final JsonMapper jsonMapper) {
+        this.conf = conf;
+        this.io = io;
+        this.state = state;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @Override
+    public void run() {
+        final var metrics = state.metrics();
+        final var current = state.tableOptions();
+        final var tableOptions = new TableFormatter.TableOptions( // always on stdout
+                current.transpose(), current.lineSeparator(), current.lookAheadRows(), current.format(), null);
+        final var connections = metrics.connections();
+        final var tunnels = metrics.tunnels();
+        try (final var out = new ChunkedWriter(io.stdout())) {
+            if (connections.isEmpty()) {
+                out.append("No statement executed yet.\n");
+            } else {
+                try (final var formatter = RowFormatter.of(
+                        List.of("type", "name", "count", "errors", "p50", "p95", "p99", "max", "rows", "rendered"),
+                        tableOptions, jsonMapper, out)) {
+                    addStatements(formatter, "connection", connections);
+                    addStatements(formatter, "alias", metrics.aliases());
+                }
+            }
+            if (!tunnels.isEmpty()) {
+                try (final var formatter = RowFormatter.of(
+                        List.of("tunnel", "clients", "bytes in", "bytes out"), tableOptions, jsonMapper, out)) {
+                    tunnels.forEach((name, traffic) -> formatter.add(List.of(name, traffic.clients(), traffic.bytesIn(), traffic.bytesOut())));
+                }
+            }
+        } catch (final IOException e) {
+            throw new CommandExecutionException(e);
+        }
+        if (conf.reset()) {
+            metrics.reset();
+            io.stdout().println("Metrics reset.");
+        }
+    }
+
+    private void addStatements(final RowFormatter formatter, final String type, final Map<String, ExecutionMetrics.Snapshot> metrics) {
+        metrics.forEach((name, snapshot) -> {
+            final var row = new ArrayList<>(10);
+            row.add(type);
+            row.add(name);
+            row.add(snapshot.count());
+            row.add(snapshot.errors());
+            row.add(millis(snapshot.p50()));
+            row.add(millis(snapshot.p95()));
+            row.add(millis(snapshot.p99()));
+            row.add(millis(snapshot.max()));
+            row.add(snapshot.rows());
+            row.add(snapshot.rendered());
+            formatter.add(row);
+        });
+    }
+
+    private BigDecimal millis(final long micros) {
+        return BigDecimal.valueOf(micros, 3);
+    }
+
+    @RootConfiguration("-")
+    public record Conf(
+            @Property(documentation = "Reset the metrics once printed.", defaultValue = "false") boolean reset) {
+    }
+}
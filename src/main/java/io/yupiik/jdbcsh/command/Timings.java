@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.jdbcsh.table.RowFormatter;
+
+import java.io.PrintStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+
+// breakdown of a statement execution (connection, execute, fetch, render) measured with System.nanoTime,
+// it tells if the slowness comes from the database, the k8s tunnel or the formatting
+final class Timings {
+    private static final long PROGRESS_INTERVAL = 1_000_000_000L;
+
+    private final PrintStream progress; // null when disabled
+    private long connection = -1;
+    private long tunnel;
+    private long execute = -1;
+    private long firstRow = -1;
+    private long fetch;
+    private long render;
+    private long rows;
+    private long output = -1;
+    private String outputUnit = "bytes";
+    private boolean progressShown;
+
+    Timings(final PrintStream progress) {
+        this.progress = progress;
+    }
+
+    void connected(final long start, final long tunnelSetup) {
+        connection = System.nanoTime() - start;
+        tunnel = tunnelSetup;
+    }
+
+    void executed(final long start) {
+        execute = System.nanoTime() - start;
+    }
+
+    void rendered(final long start) { // formatter/output closing (flush)
+        render += System.nanoTime() - start;
+    }
+
+    void output(final long size, final String unit) {
+        output = size;
+        outputUnit = unit;
+    }
+
+    // same as Queries#write but measuring where the time goes and reporting the progress
+    long write(final ResultSet rset, final RowFormatter formatter) throws SQLException {
+        final int columnCount = rset.getMetaData().getColumnCount();
+        final long start = System.nanoTime();
+        long nextProgress = start + PROGRESS_INTERVAL;
+        long fetchStart = start;
+        try {
+            while (rset.next()) {
+                final var row = Queries.row(rset, columnCount);
+                final long fetched = System.nanoTime();
+                fetch += fetched - fetchStart;
+                if (firstRow < 0) {
+                    firstRow = fetched - start;
+                }
+
+                formatter.add(row);
+                rows++;
+                fetchStart = System.nanoTime();
+                render += fetchStart - fetched;
+
+                if (progress != null && fetchStart >= nextProgress) {
+                    nextProgress = fetchStart + PROGRESS_INTERVAL;
+                    progress.printf(Locale.ROOT, "\r%d rows fetched (%.0f rows/s)...", rows, rows * 1_000_000_000. / (fetchStart - start));
+                    progress.flush();
+                    progressShown = true;
+                }
+            }
+        } catch (final SQLException | RuntimeException e) {
+            formatter.abort();
+            throw e;
+        }
+        fetch += System.nanoTime() - fetchStart;
+        clearProgress();
+        return rows;
+    }
+
+    void clearProgress() {
+        if (progressShown) {
+            progress.print("\r\033[K");
+            progress.flush();
+            progressShown = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Timings: connection=" + millis(connection) + " (tunnel=" + millis(tunnel) + ")" +
+                ", execute=" + millis(execute) +
+                ", first row=" + millis(firstRow) +
+                ", fetch=" + millis(fetch) +
+                ", render=" + millis(render) +
+                ", rows=" + rows +
+                (output >= 0 ? ", output=" + output + " " + outputUnit : "");
+    }
+
+    private String millis(final long nanos) {
+        return nanos < 0 ? "-" : String.format(Locale.ROOT, "%.3fms", nanos / 1_000_000.);
+    }
+}
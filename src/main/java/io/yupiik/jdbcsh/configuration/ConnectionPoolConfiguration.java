@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.configuration;
+
+import io.yupiik.fusion.framework.build.api.configuration.Property;
+import io.yupiik.fusion.framework.build.api.json.JsonModel;
+
+@JsonModel
+public record ConnectionPoolConfiguration(
+        @Property(documentation = "Number of idle connections the pool tries to keep opened (created in background).", defaultValue = "0") int minIdle,
+        @Property(documentation = "Maximum number of idle connections kept in the pool, others are closed when released. `0` means `8`.", defaultValue = "8") int maxIdle,
+        @Property(documentation = "Duration (ms) after which an idle connection is closed (if there are more than `minIdle` connections). `0` disables the idle eviction.", defaultValue = "0") long idleTimeout,
+        @Property(documentation = "Maximum duration (ms) a connection can be used before being closed and recreated. `0` means no limit.", defaultValue = "0") long maxLifetime,
+        @Property(documentation = "Timeout (in seconds) used to validate a connection when it is borrowed from the pool (`Connection#isValid`). `0` means `5`.", defaultValue = "5") int validationTimeout) {
+}
@@ -30,6 +30,10 @@ public record JDBCConnection(
         @Property(documentation = "Database password.") String password,
         @Property(documentation = "Schema.") String schema,
         @Property(documentation = "Query/statement aliases, enables to bind a name to a SQL statement (useful when long). These are specific for this database.") List<StatementAlias> aliases,
-        @Property(documentation = "Should this connection be scoped to a single statement or can it be reused accross multiple statements (note that when switching of connection it will be closed anyway).") boolean persistent
+        @Property(documentation = "Should this connection be scoped to a single statement or can it be reused accross multiple statements (note that when switching of connection it will be closed anyway).") boolean persistent,
+        @Property(documentation = "Connection pool configuration, if set connections are pooled (and `persistent` is ignored) which avoids to pay the connection handshake (and kubernetes tunneling) for each statement.") ConnectionPoolConfiguration pool,
+        @Property(documentation = "Default fetch size for statements (`0` means driver default). When set, autocommit is disabled during the statement execution to let drivers like PostgreSQL use a server side cursor.", defaultValue = "0") int fetchSize,
+        @Property(documentation = "Default maximum number of rows returned by a statement (`0` means no limit).", defaultValue = "0") int maxRows,
+        @Property(documentation = "Default statement timeout in seconds (`0` means no timeout).", defaultValue = "0") int queryTimeout
 ) {
 }
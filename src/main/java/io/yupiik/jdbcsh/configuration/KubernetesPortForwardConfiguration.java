@@ -35,5 +35,13 @@ public record KubernetesPortForwardConfiguration(
         @Property(documentation = "Pod prefix, if `pod` is not set they will be queried using this prefix in the configured namespace and the first one matching will be taken.") String podPrefix,
         @Property(documentation = "Service name, if `pod` is not set and `podPrefix` is not set too, services will be queried using this prefix in the configured namespace and the first matching bound port will be taken (note: it must use a label selector).") String service,
         @Property(documentation = "Namespace to use. If not set and `kubeconfig` is set it can be autofilled.", defaultValue = "\"default\"") String namespace,
-        @Property(documentation = "Label selector filter for pod prefix queries (not encoded).") String labelSelectors) {
+        @Property(documentation = "Label selector filter for pod prefix queries (not encoded).") String labelSelectors,
+        @Property(documentation = "Duration (ms) the tunnel (kubernetes client and local proxy) is kept opened once no connection uses it anymore, it enables to reuse it for next statements of connections sharing this configuration. `0` means 60 seconds and a negative value closes it as soon as it is no more used.", defaultValue = "60000") long tunnelIdleTimeout,
+        @Property(documentation = "Size (in bytes) of the frames read from local clients and forwarded to the kubernetes websocket. `0` means 64KB.", defaultValue = "65536") int frameSize,
+        @Property(documentation = "Number of selector threads of the local proxy, clients are distributed round-robin between them. Useful when a pool or parallel workers go through the tunnel, `0` or `1` means a single thread.", defaultValue = "1") int selectorThreads,
+        @Property(documentation = "Number of local clients sharing a single port forward websocket (the container port is requested this number of times in the same websocket). It avoids a websocket handshake per new connection, in particular with a connection pool, but note that kubernetes opens all the pod connections of a websocket at once and that a client not reading its data slows down the other clients of its websocket. `0` or `1` means one websocket per local client, the value is capped to `16`.", defaultValue = "1") int multiplexedStreams,
+        @Property(documentation = "If `true` the local proxy always keeps a websocket opened (handshake done) for the next local client, it removes the websocket handshake from the connection latency at the cost of an idle websocket (and pod connection) renewed every `streamIdleTimeout`.", defaultValue = "false") boolean standbyWebSocket,
+        @Property(documentation = "Duration (ms) a pod connection opened by a multiplexed or standby websocket can wait for a local client. Once expired the websocket is closed when its clients are done and a new one is used for next clients. Keep it lower than the database handshake timeout (`authentication_timeout` for PostgreSQL, `connect_timeout` for MySQL) since the database can close it without the tunnel knowing. `0` means 10 seconds and a negative value means forever.", defaultValue = "10000") long streamIdleTimeout,
+        @Property(documentation = "Duration (ms) a discovered pod (`podPrefix` or `service`) is cached, once expired it is still used while it is refreshed in background. If a websocket can't be opened the pod is discovered again anyway. `0` means 5 minutes and a negative value means it never expires.", defaultValue = "300000") long podCacheTtl,
+        @Property(documentation = "If `true` and the pod is discovered with a label selector (`podPrefix` or `service`), pods are watched to invalidate the cached pod as soon as it is deleted or terminating.", defaultValue = "false") boolean podWatch) {
 }
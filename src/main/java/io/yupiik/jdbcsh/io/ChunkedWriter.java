@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+// buffers chars and flushes them by chunks to the underlying stream,
+// unlike Writer#append it copies appended strings/builders without creating an intermediate String
+public class ChunkedWriter extends Writer {
+    private final Writer delegate;
+    private final char[] buffer;
+    private int position;
+    private long count;
+
+    public ChunkedWriter(final PrintStream out) {
+        this(out, out.charset(), 64 * 1024);
+    }
+
+    public ChunkedWriter(final OutputStream out, final Charset charset, final int chunkSize) {
+        this.delegate = new OutputStreamWriter(out, charset);
+        this.buffer = new char[chunkSize];
+    }
+
+    @Override
+    public void write(final int c) throws IOException {
+        if (position == buffer.length) {
+            flushChunk();
+        }
+        buffer[position++] = (char) c;
+    }
+
+    @Override
+    public void write(final char[] chars, final int offset, final int length) throws IOException {
+        if (length >= buffer.length) { // no need to copy it
+            flushChunk();
+            delegate.write(chars, offset, length);
+            delegate.flush();
+            count += length;
+            return;
+        }
+        if (length > buffer.length - position) {
+            flushChunk();
+        }
+        System.arraycopy(chars, offset, buffer, position, length);
+        position += length;
+    }
+
+    @Override
+    public void write(final String str, final int offset, final int length) throws IOException {
+        append(str, offset, offset + length);
+    }
+
+    @Override
+    public Writer append(final CharSequence csq) throws IOException {
+        return csq == null ? append("null") : append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Writer append(final CharSequence csq, final int start, final int end) throws IOException {
+        if (csq == null) {
+            return append("null", start, end);
+        }
+        int current = start;
+        while (current < end) {
+            if (position == buffer.length) {
+                flushChunk();
+            }
+            final int chunk = Math.min(end - current, buffer.length - position);
+            if (csq instanceof String s) {
+                s.getChars(current, current + chunk, buffer, position);
+            } else if (csq instanceof StringBuilder sb) {
+                sb.getChars(current, current + chunk, buffer, position);
+            } else {
+                for (int i = 0; i < chunk; i++) {
+                    buffer[position + i] = csq.charAt(current + i);
+                }
+            }
+            position += chunk;
+            current += chunk;
+        }
+        return this;
+    }
+
+    // chars written so far, including the buffered ones
+    public long count() {
+        return count + position;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushChunk();
+    }
+
+    @Override
+    public void close() throws IOException { // the underlying stream is not owned (stdout)
+        flush();
+    }
+
+    private void flushChunk() throws IOException {
+        if (position > 0) {
+            delegate.write(buffer, 0, position);
+            count += position;
+            position = 0;
+        }
+        delegate.flush();
+    }
+}
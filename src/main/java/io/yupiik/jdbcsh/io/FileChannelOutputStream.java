@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// writes a file through a large direct buffer so the channel only gets big writes,
+// when compressed, bytes are deflated straight into this buffer and framed as gzip (RFC 1952)
+public class FileChannelOutputStream extends OutputStream {
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private final byte[] single = new byte[1];
+    private long count;
+    private long written;
+    private boolean closed;
+
+    public FileChannelOutputStream(final Path path, final int bufferSize) throws IOException {
+        this(path, bufferSize, false, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public FileChannelOutputStream(final Path path, final int bufferSize, final boolean gzip, final int compressionLevel) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 64)).order(LITTLE_ENDIAN);
+        if (gzip) {
+            this.deflater = new Deflater(compressionLevel, true);
+            this.crc = new CRC32();
+            buffer.put(GZIP_HEADER);
+        } else {
+            this.deflater = null;
+            this.crc = null;
+        }
+    }
+
+    // bytes written to this stream (uncompressed)
+    public long count() {
+        return count;
+    }
+
+    // bytes written to the file
+    public long written() {
+        return written;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (deflater != null) {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+            return;
+        }
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+        count++;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        count += length;
+        if (deflater != null) {
+            crc.update(bytes, offset, length);
+            deflater.setInput(bytes, offset, length);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+            return;
+        }
+
+        int current = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            final int chunk = Math.min(remaining, buffer.remaining());
+            buffer.put(bytes, current, chunk);
+            current += chunk;
+            remaining -= chunk;
+        }
+    }
+
+    @Override
+    public void flush() {
+        // no-op, the buffer is written when full or on close to keep large writes
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                if (buffer.remaining() < 8) {
+                    drain();
+                }
+                buffer.putInt((int) crc.getValue());
+                buffer.putInt((int) count); // ISIZE is the size modulo 2^32
+            }
+            drain();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            channel.close();
+        }
+    }
+
+    private void deflate() throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        deflater.deflate(buffer);
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("io.yupiik.jdbcsh.ConnectionCreation")
+@Label("Connection Creation")
+@Category({"jdbcsh", "Database"})
+@Description("Physical JDBC connection creation (pooled connections only emit it once).")
+public class ConnectionCreationEvent extends Event {
+    @Label("Connection")
+    public String connection;
+
+    @Label("Kubernetes")
+    @Description("Is the connection going through a kubernetes port forwarding.")
+    public boolean kubernetes;
+
+    @Label("Tunnel Setup")
+    @Timespan
+    @Description("Time spent to get the port forwarding tunnel (0 if already started).")
+    public long tunnelSetup;
+
+    @Label("Success")
+    public boolean success;
+}
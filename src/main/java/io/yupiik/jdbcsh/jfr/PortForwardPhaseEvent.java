@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("io.yupiik.jdbcsh.PortForwardPhase")
+@Label("Port Forward Phase")
+@Category({"jdbcsh", "Kubernetes"})
+@Description("Phase of a port forwarding launch: client creation, pod discovery or proxy bind.")
+public class PortForwardPhaseEvent extends Event {
+    @Label("Connection")
+    public String connection;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("io.yupiik.jdbcsh.Statement")
+@Label("Statement")
+@Category({"jdbcsh", "Database"})
+@Description("Statement execution, from the connection acquisition to the last rendered row.")
+public class StatementEvent extends Event {
+    @Label("Connection")
+    @Description("Connection name, comma separated names or globs for a fan-out execution.")
+    public String connection;
+
+    @Label("Alias")
+    @Description("Statement alias name if the statement was an alias.")
+    public String alias;
+
+    @Label("SQL Hash")
+    @Description("Hash of the executed SQL, it enables to group executions without recording the SQL itself.")
+    public String sqlHash;
+
+    @Label("Rows")
+    @Description("Fetched rows or update count, -1 if unknown.")
+    public long rows = -1;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("io.yupiik.jdbcsh.TunnelClient")
+@Label("Tunnel Client")
+@Category({"jdbcsh", "Kubernetes"})
+@Description("Local client of a port forwarding tunnel, from its accept to its close.")
+public class TunnelClientEvent extends Event {
+    @Label("Local Port")
+    public int localPort;
+
+    @Label("Stream")
+    @Description("Stream index of the client in its websocket.")
+    public int stream;
+
+    @Label("Bytes In")
+    @DataAmount
+    @Description("Bytes received from the pod and written to the local client.")
+    public long bytesIn;
+
+    @Label("Bytes Out")
+    @DataAmount
+    @Description("Bytes read from the local client and sent to the pod.")
+    public long bytesOut;
+}
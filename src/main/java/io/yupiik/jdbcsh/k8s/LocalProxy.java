@@ -16,75 +16,150 @@
 package io.yupiik.jdbcsh.k8s;
 
 import io.yupiik.fusion.kubernetes.client.KubernetesClient;
+import io.yupiik.jdbcsh.jfr.TunnelClientEvent;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.http.WebSocket;
-import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.logging.Level.SEVERE;
 
 public class LocalProxy implements AutoCloseable {
+    // frames sent to the websocket but not yet acknowledged before we stop reading the local client
+    private static final int MAX_IN_FLIGHT_FRAMES = 4;
+    // a local client not reading its data stalls the other streams of its websocket so don't share it too much
+    private static final int MAX_MULTIPLEXED_STREAMS = 16;
+    private static final long DEFAULT_STREAM_IDLE_TIMEOUT = 10_000;
+
     private final Logger logger = Logger.getLogger(LocalProxy.class.getName());
 
+    private final KubernetesClient client;
+    private final PortForwardTarget target;
     private final ServerSocketChannel socket;
     private final Map<SocketChannel, Connection> clients = new ConcurrentHashMap<>();
     private final ExecutorService threads;
+    private final ExecutorService callbacks; // null when callbacks run in websocket threads
+    private final ExecutorService connector; // pod resolution can call the kubernetes API so it never runs in event loops
     private final AtomicBoolean running = new AtomicBoolean(true);
+    private final ByteBufferPool buffers;
+    private final long maxOutboundBytes;
+    private final List<Loop> loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final int streamsPerWebSocket;
+    private final boolean standby;
+    private final long streamIdleTimeout; // <= 0 means never
+    private final TunnelTraffic traffic;
+    private final int localPort;
+    private Session currentSession; // guarded by clients
+    private Session spare; // guarded by clients, pre-opened websocket for next client
 
     public LocalProxy(final String address, final int inPort, final KubernetesClient client, final URI uri) throws IOException {
-        final var selector = Selector.open();
-        socket = ServerSocketChannel.open();
-        threads = Executors.newCachedThreadPool(new ThreadFactory() {
+        this(address, inPort, client, uri, new Options(0, 1, 1, false));
+    }
+
+    public LocalProxy(final String address, final int inPort, final KubernetesClient client, final URI uri,
+                      final Options options) throws IOException {
+        this(address, inPort, client, PortForwardTarget.of(uri), options);
+    }
+
+    public LocalProxy(final String address, final int inPort, final KubernetesClient client, final PortForwardTarget target,
+                      final Options options) throws IOException {
+        this(address, inPort, client, target, options, new TunnelTraffic());
+    }
+
+    public LocalProxy(final String address, final int inPort, final KubernetesClient client, final PortForwardTarget target,
+                      final Options options, final TunnelTraffic traffic) throws IOException {
+        this.client = client;
+        this.traffic = traffic;
+        this.target = target;
+        buffers = new ByteBufferPool(options.frameSize() <= 0 ? 64 * 1024 : options.frameSize(), 16);
+        maxOutboundBytes = (long) MAX_IN_FLIGHT_FRAMES * buffers.bufferSize();
+        streamsPerWebSocket = Math.min(MAX_MULTIPLEXED_STREAMS, Math.max(1, options.multiplexedStreams()));
+        standby = options.standbyWebSocket();
+        streamIdleTimeout = options.streamIdleTimeout() == 0 ? DEFAULT_STREAM_IDLE_TIMEOUT : options.streamIdleTimeout();
+
+        final int selectorThreads = Math.max(1, options.selectorThreads());
+        threads = Executors.newFixedThreadPool(selectorThreads, new ThreadFactory() {
             private final AtomicInteger counter = new AtomicInteger();
 
             @Override
             public Thread newThread(final Runnable task) {
-                return new Thread(task, LocalProxy.class.getName() + "-pool-" + counter.incrementAndGet());
+                return new Thread(task, LocalProxy.class.getName() + "-selector-" + counter.incrementAndGet());
             }
         });
+        // with multiple selectors, websocket completions are moved out of the http client threads
+        callbacks = selectorThreads > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        connector = Executors.newVirtualThreadPerTaskExecutor();
 
+        loops = new ArrayList<>(selectorThreads);
+        for (int i = 0; i < selectorThreads; i++) {
+            loops.add(new Loop(Selector.open()));
+        }
+
+        socket = ServerSocketChannel.open();
         socket.bind(new InetSocketAddress(address == null ? "localhost" : address, inPort));
         socket.configureBlocking(false);
-        socket.register(selector, SelectionKey.OP_ACCEPT, null);
-        threads.execute(() -> eventLoop(client, uri, selector));
+        localPort = ((InetSocketAddress) socket.getLocalAddress()).getPort();
+        socket.register(loops.get(0).selector, SelectionKey.OP_ACCEPT, null); // accept on the first loop only
+        loops.forEach(loop -> threads.execute(() -> eventLoop(loop)));
+        if (standby) {
+            openSpare();
+        }
     }
 
-    private void eventLoop(final KubernetesClient client, final URI uri, final Selector selector) {
+    private void eventLoop(final Loop loop) {
+        final var selector = loop.selector;
         while (isRunning()) {
             try {
                 selector.select();
+
+                Runnable task;
+                while ((task = loop.tasks.poll()) != null) {
+                    task.run();
+                }
+
                 final var selectedKeys = selector.selectedKeys();
                 for (final var key : selectedKeys) {
                     if (!key.isValid()) {
                         continue;
                     }
                     if (key.isAcceptable()) {
-                        onAccept(
-                                client.newWebSocketBuilder().subprotocols("v4.channel.k8s.io"),
-                                uri, selector, socket, clients);
+                        onAccept(loop);
                     }
-                    if (key.isReadable()) {
+                    if (key.isValid() && key.isWritable()) {
+                        onWrite(clients, key);
+                    }
+                    if (key.isValid() && key.isReadable()) {
                         onRead(clients, key);
                     }
                 }
@@ -93,6 +168,11 @@ public class LocalProxy implements AutoCloseable {
                 logger.log(SEVERE, ioe, ioe::getMessage);
             }
         }
+        try {
+            selector.close();
+        } catch (final IOException e) {
+            logger.log(SEVERE, e, e::getMessage);
+        }
         logger.finest(() -> "Exiting proxy event loop");
     }
 
@@ -100,31 +180,46 @@ public class LocalProxy implements AutoCloseable {
         return running.get() && !Thread.currentThread().isInterrupted() && !threads.isShutdown();
     }
 
+    private void onWrite(final Map<SocketChannel, Connection> clients, final SelectionKey key) {
+        final var connection = clients.get((SocketChannel) key.channel());
+        if (connection == null) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } else { // cleared under the listener lock else it can override the OP_WRITE a concurrent forward() just set
+            connection.listener.onWritable(() -> connection.updateInterest(key, SelectionKey.OP_WRITE, false));
+        }
+    }
+
     private void onRead(final Map<SocketChannel, Connection> clients, final SelectionKey key) {
         try {
             final var fwsClient = (SocketChannel) key.channel();
             final var connection = clients.get(fwsClient);
             if (connection != null) {
-                final var buffer = connection.buffer();
-                synchronized (buffer) {
-                    buffer.clear();
-                    buffer.put((byte) 0); // channel byte
-                    final int read = fwsClient.read(buffer);
-                    if (read > 0) {
-                        buffer.flip();
-                        connection.registerPending(connection.webSocket()
-                                .thenCompose(ws -> ws
-                                        .sendBinary(buffer, true)
-                                        .exceptionally(e -> {
-                                            logger.log(SEVERE, e, e::getMessage);
-                                            return null;
-                                        })));
-                    } else if (read == -1) {
+                // the buffer is owned by the websocket until the send completes, then it goes back to the pool
+                final var buffer = buffers.acquire();
+                buffer.put((byte) (connection.stream * 2)); // data channel byte
+                final int read;
+                try {
+                    read = fwsClient.read(buffer);
+                } catch (final IOException ioe) {
+                    buffers.release(buffer);
+                    throw ioe;
+                }
+                if (read > 0) {
+                    connection.onFrameSent(key, read);
+                    traffic.onBytesOut(read);
+                    connection.send(ws -> ws.sendBinary(buffer.flip(), true), () -> {
+                        buffers.release(buffer);
+                        connection.onFrameAcknowledged(key);
+                    });
+                } else {
+                    buffers.release(buffer);
+                    if (read == -1) {
                         logger.finest(() -> "Closing client " + fwsClient);
-                        clients.remove(fwsClient);
-                        connection.registerPending(connection.webSocket()
-                                .thenCompose(ws -> ws.sendClose(WebSocket.NORMAL_CLOSURE, "Bye."))
-                                .whenComplete((ok, ko) -> clients.remove(fwsClient)));
+                        key.cancel();
+                        release(connection, () -> {
+                            clients.remove(fwsClient);
+                            connection.onClosed(localPort);
+                        });
                     }
                 }
             } else {
@@ -135,42 +230,243 @@ public class LocalProxy implements AutoCloseable {
         }
     }
 
-    private void onAccept(final WebSocket.Builder req, final URI uri, final Selector selector, final ServerSocketChannel socket,
-                          final Map<SocketChannel, Connection> clients) {
+    private void release(final Connection connection, final Runnable onComplete) {
+        connection.send(ws -> {
+            if (connection.session.release(connection.stream)) { // last stream of the websocket
+                return ws.sendClose(WebSocket.NORMAL_CLOSURE, "Bye.");
+            }
+            return completedFuture(ws);
+        }, onComplete);
+    }
+
+    private void onAccept(final Loop acceptor) {
+        final SocketChannel fwdClient;
         try {
-            final var fwdClient = socket.accept();
+            fwdClient = socket.accept();
+            if (fwdClient == null) {
+                return;
+            }
             fwdClient.configureBlocking(false);
-            fwdClient.register(selector, SelectionKey.OP_READ);
-
-            final var wsPromise = new CompletableFuture<WebSocket>();
-            final var connection = new Connection(wsPromise, ByteBuffer.allocate(4096), new CopyOnWriteArrayList<>());
-            final var listener = new PortForwardWebSocket(fwdClient, connection::registerPending);
-            req.buildAsync(uri, listener).whenComplete((ok, ko) -> {
-                if (ko != null) {
-                    clients.remove(fwdClient);
-                    logger.log(SEVERE, ko, ko::getMessage);
-                    wsPromise.completeExceptionally(ko);
-                } else {
-                    wsPromise.complete(ok);
+        } catch (final IOException e) {
+            logger.log(SEVERE, e, e::getMessage);
+            return;
+        }
+
+        final var loop = loops.get(Math.floorMod(nextLoop.getAndIncrement(), loops.size()));
+        if (loop == acceptor) {
+            register(loop, fwdClient);
+        } else { // a selector only sees new keys once it is woken up so let its thread do the registration
+            loop.tasks.add(() -> register(loop, fwdClient));
+            loop.selector.wakeup();
+        }
+    }
+
+    private void register(final Loop loop, final SocketChannel fwdClient) {
+        try {
+            final Session session;
+            final int stream;
+            boolean newSession = false;
+            boolean replaceSpare = false;
+            synchronized (clients) {
+                int next = currentSession == null ? -1 : currentSession.assign();
+                if (next < 0) {
+                    currentSession = takeSpare();
+                    replaceSpare = standby;
+                    next = currentSession == null ? -1 : currentSession.assign();
+                    if (next < 0) {
+                        currentSession = new Session(streamsPerWebSocket, false, this::onStreamFailure);
+                        newSession = true;
+                        next = currentSession.assign();
+                    }
                 }
-            });
+                session = currentSession;
+                stream = next;
+            }
+            if (replaceSpare) {
+                openSpare();
+            }
+
+            final var connection = new Connection(session, stream, callbacks == null ? Runnable::run : callbacks);
+            clients.put(fwdClient, connection); // before registering OP_READ to not miss early reads
+            traffic.onClient();
+
+            final var key = fwdClient.register(loop.selector, SelectionKey.OP_READ);
+            connection.listener = new PortForwardWebSocket(
+                    fwdClient, session::registerPending, maxOutboundBytes,
+                    () -> connection.updateInterest(key, SelectionKey.OP_WRITE, true), traffic);
 
-            clients.put(fwdClient, connection);
+            if (session.multiplexer == null) {
+                connect(session, connection.listener, true);
+            } else {
+                final boolean attached = session.multiplexer.attach(stream, connection.listener);
+                if (newSession) {
+                    connect(session, session.multiplexer, true);
+                } else if (session.webSocket.isCompletedExceptionally()) {
+                    onSessionFailure(session);
+                } else if (!attached) { // failed since it was assigned
+                    onStreamFailure(session, stream);
+                }
+            }
         } catch (final IOException e) {
             logger.log(SEVERE, e, e::getMessage);
         }
     }
 
+    // the handshake is done before a client needs it so it only waits for the local accept
+    private void openSpare() {
+        final var session = new Session(streamsPerWebSocket, true, this::onStreamFailure);
+        synchronized (clients) {
+            if (!running.get()) {
+                return;
+            }
+            spare = session;
+        }
+        connect(session, session.multiplexer, true);
+    }
+
+    private Session takeSpare() { // under clients lock
+        final var session = spare;
+        spare = null;
+        if (session == null || session.hasFreeStream()) {
+            return session;
+        }
+        session.abort(); // closed by the server in between
+        return null;
+    }
+
+    // async since the target can list the pods (expired or invalidated cache) and it must not freeze the clients of the event loop
+    private void connect(final Session session, final WebSocket.Listener listener, final boolean canRetry) {
+        try {
+            connector.execute(() -> {
+                final URI uri;
+                try {
+                    uri = multiplexedUri(target.uri());
+                } catch (final RuntimeException re) {
+                    onConnectFailure(session, re);
+                    return;
+                }
+                client.newWebSocketBuilder().subprotocols("v4.channel.k8s.io").buildAsync(uri, listener).whenCompleteAsync((ok, ko) -> {
+                    if (ko != null && canRetry && target.refresh(uri)) { // pod was likely rescheduled
+                        logger.info(() -> "Can't open port forwarding websocket on '" + uri + "', retrying on '" + target.uri() + "'");
+                        connect(session, listener, false);
+                    } else if (ko != null) {
+                        onConnectFailure(session, ko);
+                    } else {
+                        session.webSocket.complete(ok);
+                        if (session.multiplexer != null && streamIdleTimeout > 0) {
+                            CompletableFuture.delayedExecutor(streamIdleTimeout, MILLISECONDS).execute(() -> expire(session));
+                        }
+                    }
+                }, connector);
+            });
+        } catch (final RejectedExecutionException ree) { // proxy closed
+            onConnectFailure(session, ree);
+        }
+    }
+
+    private void onConnectFailure(final Session session, final Throwable error) {
+        logger.log(SEVERE, error, error::getMessage);
+        session.webSocket.completeExceptionally(error);
+        onSessionFailure(session);
+    }
+
+    // kubernetes opens the pod connections of all the streams with the websocket and the server can close the unused ones
+    // (authentication timeout) without the v4 protocol telling it, so streams not assigned in time are never handed out
+    private void expire(final Session session) {
+        boolean replaceSpare = false;
+        synchronized (clients) {
+            if (currentSession == session) {
+                currentSession = null;
+            }
+            if (spare == session) {
+                spare = null;
+                replaceSpare = running.get();
+            }
+        }
+        if (session.retire()) { // no local client uses it
+            session.send(ws -> ws.sendClose(WebSocket.NORMAL_CLOSURE, "Idle."), () -> {
+            }, callbacks == null ? Runnable::run : callbacks);
+        }
+        if (replaceSpare) {
+            openSpare();
+        }
+    }
+
+    // the pod side connection of a stream is broken (error channel message), close its local client instead of letting it wait
+    private void onStreamFailure(final Session session, final int stream) {
+        for (final var client : clients.entrySet()) {
+            final var connection = client.getValue();
+            if (connection.session == session && connection.stream == stream && clients.remove(client.getKey(), connection)) {
+                try {
+                    client.getKey().close();
+                } catch (final IOException e) {
+                    // no-op
+                }
+                connection.onClosed(localPort);
+                release(connection, () -> {
+                });
+                return;
+            }
+        }
+    }
+
+    private void onSessionFailure(final Session session) {
+        synchronized (clients) {
+            if (currentSession == session) {
+                currentSession = null;
+            }
+            if (spare == session) {
+                spare = null;
+            }
+        }
+        final var iterator = clients.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final var client = iterator.next();
+            if (client.getValue().session == session) {
+                iterator.remove();
+                client.getValue().onClosed(localPort);
+                try {
+                    client.getKey().close();
+                } catch (final IOException e) {
+                    // no-op
+                }
+            }
+        }
+    }
+
+    // kubernetes opens one stream (pair of channels) per requested port so repeat the port
+    private URI multiplexedUri(final URI uri) {
+        if (streamsPerWebSocket == 1) {
+            return uri;
+        }
+        final var query = uri.getRawQuery();
+        if (query == null) {
+            return uri;
+        }
+        final var ports = Stream.of(query.split("&")).filter(it -> it.startsWith("ports=")).findFirst().orElse(null);
+        if (ports == null) {
+            return uri;
+        }
+        return URI.create(uri.toASCIIString() + ("&" + ports).repeat(streamsPerWebSocket - 1));
+    }
+
     @Override
     public void close() throws IOException {
         running.set(false);
+        synchronized (clients) {
+            if (spare != null) {
+                spare.abort();
+                spare = null;
+            }
+        }
         try {
             socket.close();
         } finally {
             try {
                 allNoFailFast(clients.values().stream()
-                        .filter(it -> !it.pending().isEmpty())
-                        .map(it -> allNoFailFast(it.pending()))
+                        .map(it -> it.session)
+                        .distinct()
+                        .map(it -> allNoFailFast(Stream.concat(Stream.of(it.lastSend), it.pending.stream()).toList()))
                         .toList())
                         .get();
             } catch (final InterruptedException e) {
@@ -180,6 +476,11 @@ public class LocalProxy implements AutoCloseable {
             }
 
             threads.shutdownNow();
+            loops.forEach(loop -> loop.selector.wakeup());
+            if (callbacks != null) {
+                callbacks.shutdownNow();
+            }
+            connector.shutdownNow();
             try {
                 if (!threads.awaitTermination(1, MINUTES)) {
                     logger.warning("Can't stop thread pool in 1mn");
@@ -188,6 +489,7 @@ public class LocalProxy implements AutoCloseable {
                 logger.log(SEVERE, e, e::getMessage);
                 Thread.currentThread().interrupt();
             }
+            clients.values().forEach(it -> it.onClosed(localPort));
         }
     }
 
@@ -203,11 +505,172 @@ public class LocalProxy implements AutoCloseable {
         return (InetSocketAddress) socket.getLocalAddress();
     }
 
-    private record Connection(CompletionStage<WebSocket> webSocket, ByteBuffer buffer,
-                              List<CompletionStage<?>> pending) {
+    /**
+     * @param frameSize          size of the frames read from local clients, {@code 0} means 64KB.
+     * @param selectorThreads    number of selector threads, clients are distributed round-robin between them.
+     * @param multiplexedStreams number of local clients sharing a websocket (at most 16), {@code 0} or {@code 1} means one websocket per client.
+     * @param standbyWebSocket   should a websocket be opened in advance for next client.
+     * @param streamIdleTimeout  duration (ms) a stream of a multiplexed or standby websocket can wait for a local client,
+     *                           {@code 0} means 10 seconds and a negative value means forever.
+     */
+    public record Options(int frameSize, int selectorThreads, int multiplexedStreams, boolean standbyWebSocket, long streamIdleTimeout) {
+        public Options(final int frameSize, final int selectorThreads, final int multiplexedStreams, final boolean standbyWebSocket) {
+            this(frameSize, selectorThreads, multiplexedStreams, standbyWebSocket, 0);
+        }
+    }
+
+    private record Loop(Selector selector, Queue<Runnable> tasks) {
+        private Loop(final Selector selector) {
+            this(selector, new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    // a websocket and the local clients (streams) using it
+    private static final class Session {
+        private final CompletableFuture<WebSocket> webSocket = new CompletableFuture<>();
+        private final int streams;
+        private final List<CompletionStage<?>> pending = new CopyOnWriteArrayList<>();
+        private final MultiplexedPortForwardWebSocket multiplexer; // null when there is a single stream
+        private volatile CompletableFuture<?> lastSend = completedFuture(null);
+        private int assigned; // guarded by this
+        private int active; // guarded by this, streams assigned and not yet released
+        private boolean retired; // guarded by this, no more stream is handed out
+
+        private Session(final int streams, final boolean attachLater, final ObjIntConsumer<Session> onStreamFailure) {
+            this.streams = streams;
+            this.multiplexer = streams > 1 || attachLater ?
+                    new MultiplexedPortForwardWebSocket(stream -> onStreamFailure.accept(this, stream)) : null;
+        }
+
+        private void abort() {
+            webSocket.thenAccept(WebSocket::abort);
+        }
+
+        private synchronized boolean hasFreeStream() {
+            if (retired || webSocket.isCompletedExceptionally() || (multiplexer != null && multiplexer.isClosed())) {
+                return false;
+            }
+            for (int i = assigned; i < streams; i++) {
+                if (multiplexer == null || !multiplexer.isFailed(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // returns the stream to use or -1 if there is none, failed streams are skipped
+        private synchronized int assign() {
+            if (!hasFreeStream()) {
+                return -1;
+            }
+            while (multiplexer != null && multiplexer.isFailed(assigned)) {
+                assigned++;
+            }
+            active++;
+            return assigned++;
+        }
+
+        // returns true if the websocket is no more used
+        private synchronized boolean retire() {
+            retired = true;
+            return active == 0;
+        }
+
+        // websocket only supports one outstanding send so chain them
+        private synchronized void send(final Function<WebSocket, CompletionStage<WebSocket>> sender, final Runnable onComplete,
+                                       final Executor callbacks) {
+            lastSend = lastSend
+                    .thenCompose(ignored -> webSocket)
+                    .thenCompose(sender)
+                    .handleAsync((ok, ko) -> {
+                        onComplete.run();
+                        if (ko != null) {
+                            Logger.getLogger(LocalProxy.class.getName()).log(SEVERE, ko, ko::getMessage);
+                        }
+                        return null;
+                    }, callbacks);
+        }
+
+        // returns true when the websocket is no more used
+        private synchronized boolean release(final int stream) {
+            if (multiplexer != null) {
+                multiplexer.detach(stream);
+            }
+            return --active == 0 && !hasFreeStream();
+        }
+
         private void registerPending(final CompletionStage<?> promise) {
-            pending().add(promise);
-            promise.whenComplete((ok, ko) -> pending().remove(promise));
+            pending.add(promise);
+            promise.whenComplete((ok, ko) -> pending.remove(promise));
+        }
+    }
+
+    private static final class Connection {
+        private final Session session;
+        private final int stream;
+        private final Executor callbacks;
+        private volatile PortForwardWebSocket listener;
+        private int inFlight; // guarded by this
+        private long bytesOut; // guarded by this
+        private TunnelClientEvent event = new TunnelClientEvent(); // guarded by this, null once committed
+
+        private Connection(final Session session, final int stream, final Executor callbacks) {
+            this.session = session;
+            this.stream = stream;
+            this.callbacks = callbacks;
+            event.begin();
+        }
+
+        private void send(final Function<WebSocket, CompletionStage<WebSocket>> sender, final Runnable onComplete) {
+            session.send(sender, onComplete, callbacks);
+        }
+
+        // stop reading the local client while the websocket doesn't keep up
+        private synchronized void onFrameSent(final SelectionKey key, final int bytes) {
+            bytesOut += bytes;
+            if (++inFlight == MAX_IN_FLIGHT_FRAMES) {
+                updateInterest(key, SelectionKey.OP_READ, false);
+            }
+        }
+
+        private synchronized void onFrameAcknowledged(final SelectionKey key) {
+            if (inFlight-- == MAX_IN_FLIGHT_FRAMES) {
+                updateInterest(key, SelectionKey.OP_READ, true);
+            }
+        }
+
+        private void onClosed(final int localPort) {
+            final TunnelClientEvent closed;
+            final long sent;
+            synchronized (this) {
+                if (event == null) { // already recorded
+                    return;
+                }
+                closed = event;
+                sent = bytesOut;
+                event = null;
+            }
+            closed.end();
+            if (closed.shouldCommit()) { // listener lock taken outside of this one, it calls updateInterest under its lock
+                final var currentListener = listener;
+                closed.localPort = localPort;
+                closed.stream = stream;
+                closed.bytesOut = sent;
+                closed.bytesIn = currentListener == null ? 0 : currentListener.received();
+                closed.commit();
+            }
+        }
+
+        private synchronized void updateInterest(final SelectionKey key, final int op, final boolean enable) {
+            if (!key.isValid()) {
+                return;
+            }
+            try {
+                key.interestOps(enable ? key.interestOps() | op : key.interestOps() & ~op);
+                key.selector().wakeup(); // can be called from a websocket thread
+            } catch (final CancelledKeyException cke) {
+                // no-op, client closed
+            }
         }
     }
 }
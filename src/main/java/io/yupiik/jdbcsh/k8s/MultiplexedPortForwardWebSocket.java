@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.k8s;
+
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.logging.Level.SEVERE;
+
+// one websocket requesting the same port N times (ports=P&ports=P...), stream i uses data channel 2i and error channel 2i+1.
+// streams can be attached to a local client after the websocket is opened, data received before are kept until then.
+// a message on an error channel means the pod side connection of the stream is broken so the stream is marked as failed and never reused.
+// note: messages are requested for the whole websocket so a local client not reading its data stalls the other streams (head-of-line blocking),
+// it is why the number of streams sharing a websocket must stay small.
+public class MultiplexedPortForwardWebSocket implements WebSocket.Listener {
+    private final Map<Integer, PortForwardWebSocket> streams = new HashMap<>();
+    private final Map<Integer, Queue<ByteBuffer>> early = new HashMap<>();
+    private final BitSet released = new BitSet();
+    private final BitSet failed = new BitSet();
+    private final IntConsumer onStreamFailure;
+
+    // websocket callbacks are serialized so no need to synchronize these ones
+    private final BitSet portFrames = new BitSet();
+    private int currentChannel = -1; // channel of a fragmented message
+    private boolean skipCurrent;
+
+    private volatile boolean closed;
+
+    public MultiplexedPortForwardWebSocket() {
+        this(stream -> {
+        });
+    }
+
+    /**
+     * @param onStreamFailure called (outside of the websocket lock) with the stream index when its error channel receives a message.
+     */
+    public MultiplexedPortForwardWebSocket(final IntConsumer onStreamFailure) {
+        this.onStreamFailure = onStreamFailure;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized boolean isFailed(final int stream) {
+        return failed.get(stream);
+    }
+
+    // returns false if the stream can't be used (websocket closed or stream failed), the writer is closed then
+    public synchronized boolean attach(final int stream, final PortForwardWebSocket writer) {
+        if (closed || failed.get(stream)) {
+            writer.onClose(null, WebSocket.NORMAL_CLOSURE, closed ? "Already closed." : "Stream failed.");
+            return false;
+        }
+        streams.put(stream, writer);
+        final var data = early.remove(stream);
+        if (data != null) { // these messages were already requested
+            data.forEach(it -> writer.forward(null, it, false));
+        }
+        return true;
+    }
+
+    // the pod side stream can't be reused so the local client is closed once its pending data are written
+    public synchronized void detach(final int stream) {
+        released.set(stream);
+        early.remove(stream);
+        final var writer = streams.remove(stream);
+        if (writer != null) {
+            writer.onClose(null, WebSocket.NORMAL_CLOSURE, "Released.");
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(final WebSocket webSocket, final ByteBuffer data, final boolean last) {
+        final int failedStream = dispatch(webSocket, data, last);
+        if (failedStream >= 0) { // outside the lock since the callback can detach streams
+            onStreamFailure.accept(failedStream);
+        }
+        return null;
+    }
+
+    // returns the index of the stream which just failed or -1
+    private synchronized int dispatch(final WebSocket webSocket, final ByteBuffer data, final boolean last) {
+        final int channel;
+        if (currentChannel < 0) {
+            if (!data.hasRemaining()) {
+                webSocket.request(1);
+                return -1;
+            }
+            channel = data.get() & 0xFF;
+            skipCurrent = !portFrames.get(channel); // first message of a channel is the port
+            portFrames.set(channel);
+        } else {
+            channel = currentChannel;
+        }
+        currentChannel = last ? -1 : channel;
+
+        if (skipCurrent) {
+            webSocket.request(1);
+            return -1;
+        }
+
+        final int stream = channel / 2;
+        if (channel % 2 == 1) {
+            webSocket.request(1);
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            final var error = UTF_8.decode(data).toString();
+            logger().warning(() -> "Port forward error on stream #" + stream + ": " + error);
+            if (failed.get(stream)) { // next fragments of the error
+                return -1;
+            }
+            failed.set(stream);
+            early.remove(stream);
+            final var writer = streams.remove(stream);
+            if (writer != null) {
+                writer.onClose(webSocket, WebSocket.NORMAL_CLOSURE, error);
+            }
+            return stream;
+        }
+
+        final var writer = streams.get(stream);
+        if (writer == null) {
+            if (!released.get(stream)) { // not yet attached, the server spoke first
+                early.computeIfAbsent(stream, k -> new ArrayDeque<>()).add(ByteBuffer.allocate(data.remaining()).put(data).flip());
+            }
+            webSocket.request(1);
+            return -1;
+        }
+        writer.forward(webSocket, data, true);
+        return -1;
+    }
+
+    @Override
+    public void onError(final WebSocket webSocket, final Throwable error) {
+        logger().log(SEVERE, error, error::getMessage);
+        onClose(webSocket, 5000, error.getMessage());
+    }
+
+    @Override
+    public synchronized CompletionStage<?> onClose(final WebSocket webSocket, final int statusCode, final String reason) {
+        closed = true;
+        streams.values().forEach(it -> it.onClose(webSocket, statusCode, reason));
+        streams.clear();
+        early.clear();
+        logger().finest(() -> "Closing multiplexed k8s ws connection.");
+        return null;
+    }
+
+    private Logger logger() {
+        return Logger.getLogger(MultiplexedPortForwardWebSocket.class.getName());
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.k8s;
+
+import io.yupiik.jdbcsh.configuration.KubernetesPortForwardConfiguration;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// discovered pods, shared between tunnels to not list pods each time a tunnel is (re)launched
+public class PodCache {
+    private final Map<KubernetesPortForwardConfiguration, Entry> entries = new ConcurrentHashMap<>();
+
+    public Optional<Entry> get(final KubernetesPortForwardConfiguration configuration) {
+        return Optional.ofNullable(entries.get(configuration));
+    }
+
+    public void put(final KubernetesPortForwardConfiguration configuration, final Entry entry) {
+        entries.put(configuration, entry);
+    }
+
+    public void invalidate(final KubernetesPortForwardConfiguration configuration, final String pod) {
+        entries.computeIfPresent(configuration, (k, entry) -> entry.pod().equals(pod) ? null : entry);
+    }
+
+    /**
+     * @param pod           pod name.
+     * @param labelSelector label selector used to find the pod if it was discovered, can be used to watch the pods.
+     * @param resolvedAt    timestamp (ms) of the discovery.
+     */
+    public record Entry(String pod, String labelSelector, long resolvedAt) {
+    }
+}
@@ -19,6 +19,7 @@ import io.yupiik.fusion.json.JsonMapper;
 import io.yupiik.fusion.kubernetes.client.KubernetesClient;
 import io.yupiik.fusion.kubernetes.client.KubernetesClientConfiguration;
 import io.yupiik.jdbcsh.configuration.KubernetesPortForwardConfiguration;
+import io.yupiik.jdbcsh.jfr.PortForwardPhaseEvent;
 
 import java.io.IOException;
 import java.net.URI;
@@ -30,51 +31,116 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
 
 import static java.net.http.HttpResponse.BodyHandlers.ofByteArray;
+import static java.net.http.HttpResponse.BodyHandlers.ofLines;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Optional.empty;
 import static java.util.Optional.ofNullable;
+import static java.util.logging.Level.FINE;
+import static java.util.logging.Level.WARNING;
 import static java.util.stream.Collectors.joining;
 
 // see github.com/kubernetes/kubernetes/pull/33684
 public class PortForward {
+    private final Logger logger = Logger.getLogger(PortForward.class.getName());
+
     private final KubernetesPortForwardConfiguration configuration;
     private final String connectionName;
     private final JsonMapper jsonMapper;
+    private final PodCache podCache;
+    private final long podCacheTtl;
+    private final TunnelTraffic traffic;
 
     public PortForward(final KubernetesPortForwardConfiguration configuration,
                        final String connectionName,
                        final JsonMapper jsonMapper) {
+        this(configuration, connectionName, jsonMapper, new PodCache());
+    }
+
+    public PortForward(final KubernetesPortForwardConfiguration configuration,
+                       final String connectionName,
+                       final JsonMapper jsonMapper,
+                       final PodCache podCache) {
+        this(configuration, connectionName, jsonMapper, podCache, new TunnelTraffic());
+    }
+
+    public PortForward(final KubernetesPortForwardConfiguration configuration,
+                       final String connectionName,
+                       final JsonMapper jsonMapper,
+                       final PodCache podCache,
+                       final TunnelTraffic traffic) {
         this.configuration = configuration;
         this.connectionName = connectionName;
         this.jsonMapper = jsonMapper;
+        this.podCache = podCache;
+        this.traffic = traffic;
+        this.podCacheTtl = configuration.podCacheTtl() == 0 ? 300_000 : configuration.podCacheTtl();
     }
 
     public ForwardingContext launch() {
-        final var client = newK8SClient();
+        final var client = phase("client", this::newK8SClient);
+        PodWatch watch = null;
         try {
             final var namespace = ofNullable(this.configuration.namespace()).or(client::namespace).orElse("default");
-            final var pod = findPod(client, namespace);
-            final var uri = URI.create("wss://kubernetes.api" +
-                    "/api/v1/namespaces/" + namespace +
-                    "/pods/" + pod +
-                    "/portforward?ports=" + configuration.containerPort());
-
-            try {
-                return new ForwardingContext(client, newLocalProxy(client, uri));
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
+            final var target = new PodTarget(client, namespace);
+            phase("pod-discovery", target::uri); // fail fast if the pod can't be found
+            if (configuration.podWatch()) {
+                final var labelSelector = target.entry().labelSelector();
+                if (labelSelector != null) { // explicit pod, nothing to watch
+                    watch = new PodWatch(client, namespace, labelSelector);
+                }
             }
+
+            final var proxy = phase("proxy-bind", () -> {
+                try {
+                    return newLocalProxy(client, target);
+                } catch (final IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            return new ForwardingContext(client, proxy, watch);
         } catch (final RuntimeException re) {
+            if (watch != null) {
+                watch.close();
+            }
             client.close();
             throw re;
         }
     }
 
-    protected LocalProxy newLocalProxy(final KubernetesClient client, final URI uri) throws IOException {
-        return new LocalProxy(configuration.localAddress(), configuration.localPort(), client, uri);
+    // emits a JFR event for each launch phase to see where the tunnel setup time goes
+    private <T> T phase(final String name, final Supplier<T> task) {
+        final var event = new PortForwardPhaseEvent();
+        event.begin();
+        boolean success = false;
+        try {
+            final var result = task.get();
+            success = true;
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.connection = connectionName;
+                event.phase = name;
+                event.success = success;
+                event.commit();
+            }
+        }
+    }
+
+    protected LocalProxy newLocalProxy(final KubernetesClient client, final PortForwardTarget target) throws IOException {
+        return new LocalProxy(
+                configuration.localAddress(), configuration.localPort(), client, target,
+                new LocalProxy.Options(
+                        configuration.frameSize(), configuration.selectorThreads(),
+                        configuration.multiplexedStreams(), configuration.standbyWebSocket(),
+                        configuration.streamIdleTimeout()),
+                traffic);
     }
 
     // todo: enable reading a kubeconfig?
@@ -92,19 +158,26 @@ public class PortForward {
                 .setMaster(configuration.api()));
     }
 
-    private String findPod(final KubernetesClient client, final String namespace) {
+    private PodCache.Entry findPod(final KubernetesClient client, final String namespace) {
+        final long now = System.currentTimeMillis();
         return ofNullable(configuration.pod())
                 .filter(Predicate.not(String::isBlank))
+                .map(pod -> new PodCache.Entry(pod, null, now))
                 .or(() -> ofNullable(configuration.podPrefix())
-                        .flatMap(prefix -> findFromPodPrefixAndSelector(client, namespace, prefix, configuration.labelSelectors())))
+                        .flatMap(prefix -> findFromPodPrefixAndSelector(client, namespace, prefix, configuration.labelSelectors())
+                                .map(pod -> new PodCache.Entry(pod, configuration.labelSelectors(), now))))
                 .or(() -> ofNullable(configuration.service())
-                        .flatMap(prefix -> findFromService(client, namespace, prefix)))
+                        .flatMap(service -> {
+                            final var labelSelector = findServiceSelector(client, namespace, service);
+                            return findFromPodPrefixAndSelector(client, namespace, null, labelSelector)
+                                    .map(pod -> new PodCache.Entry(pod, labelSelector, now));
+                        }))
                 .orElseThrow(() -> new IllegalArgumentException("No pod set in namespace '" + namespace + "' for connection '" + connectionName + "'"));
     }
 
     @SuppressWarnings("unchecked")
-    private Optional<String> findFromService(final KubernetesClient client,
-                                             final String namespace, final String service) {
+    private String findServiceSelector(final KubernetesClient client,
+                                       final String namespace, final String service) {
         try {
             final var services = client.send(
                     HttpRequest.newBuilder()
@@ -123,15 +196,14 @@ public class PortForward {
                 throw new IllegalArgumentException("No selector for service '" + service + "'");
             }
 
-            final var labelSelector = labels.entrySet().stream()
+            return labels.entrySet().stream()
                     .map(it -> it.getKey() + '=' + it.getValue())
                     .collect(joining(","));
-            return findFromPodPrefixAndSelector(client, namespace, null, labelSelector);
         } catch (final IOException e) {
             throw new IllegalStateException(e);
         } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
-            return empty();
+            throw new IllegalStateException(e);
         }
     }
 
@@ -172,9 +244,142 @@ public class PortForward {
                 new String(Base64.getDecoder().decode(pem)) : pem;
     }
 
-    public record ForwardingContext(KubernetesClient client, LocalProxy proxy) implements AutoCloseable {
+    private URI toUri(final String namespace, final String pod) {
+        return URI.create("wss://kubernetes.api" +
+                "/api/v1/namespaces/" + namespace +
+                "/pods/" + pod +
+                "/portforward?ports=" + configuration.containerPort());
+    }
+
+    // resolves the pod from the cache, an expired entry is still used while it is refreshed in background
+    private class PodTarget implements PortForwardTarget {
+        private final KubernetesClient client;
+        private final String namespace;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private PodTarget(final KubernetesClient client, final String namespace) {
+            this.client = client;
+            this.namespace = namespace;
+        }
+
+        @Override
+        public URI uri() {
+            final var entry = entry();
+            if (podCacheTtl > 0 && entry.resolvedAt() + podCacheTtl < System.currentTimeMillis() && refreshing.compareAndSet(false, true)) {
+                Thread.ofVirtual().name(PortForward.class.getName() + "-refresh-" + connectionName).start(() -> {
+                    try {
+                        resolve();
+                    } catch (final RuntimeException re) {
+                        logger.log(WARNING, re, () -> "Can't refresh pod of connection '" + connectionName + "': " + re.getMessage());
+                    } finally {
+                        refreshing.set(false);
+                    }
+                });
+            }
+            return toUri(namespace, entry.pod());
+        }
+
+        @Override
+        public boolean refresh(final URI failed) {
+            if (configuration.pod() != null && !configuration.pod().isBlank()) {
+                return false;
+            }
+            podCache.get(configuration).ifPresent(entry -> podCache.invalidate(configuration, entry.pod()));
+            try {
+                return !toUri(namespace, resolve().pod()).equals(failed);
+            } catch (final RuntimeException re) {
+                logger.log(WARNING, re, () -> "Can't refresh pod of connection '" + connectionName + "': " + re.getMessage());
+                return false;
+            }
+        }
+
+        private PodCache.Entry entry() {
+            return podCache.get(configuration).orElseGet(this::resolve);
+        }
+
+        private PodCache.Entry resolve() {
+            final var entry = findPod(client, namespace);
+            podCache.put(configuration, entry);
+            return entry;
+        }
+    }
+
+    // invalidates the cached pod when it is deleted or terminating, next connection will discover the new one
+    private class PodWatch implements AutoCloseable {
+        private final KubernetesClient client;
+        private final String namespace;
+        private final String labelSelector; // captured once, the cache entry is removed when the pod goes away
+        private final Thread thread;
+        private volatile boolean closed;
+
+        private PodWatch(final KubernetesClient client, final String namespace, final String labelSelector) {
+            this.client = client;
+            this.namespace = namespace;
+            this.labelSelector = labelSelector;
+            this.thread = Thread.ofVirtual().name(PortForward.class.getName() + "-watch-" + connectionName).start(this::run);
+        }
+
+        private void run() {
+            while (!closed) {
+                try {
+                    final var response = client.send(
+                            HttpRequest.newBuilder()
+                                    .GET()
+                                    .header("Accept", "application/json, */*")
+                                    .uri(URI.create("https://kubernetes.api/api/v1/namespaces/" + namespace + "/pods?watch=true" +
+                                            "&labelSelector=" + URLEncoder.encode(labelSelector, UTF_8)))
+                                    .build(),
+                            ofLines());
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("Can't watch pods: " + response);
+                    }
+                    try (final var lines = response.body()) {
+                        lines.filter(Predicate.not(String::isBlank)).forEach(this::onEvent);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (final IOException | RuntimeException e) {
+                    if (closed) {
+                        return;
+                    }
+                    logger.log(FINE, e, () -> "Pod watch of connection '" + connectionName + "' failed: " + e.getMessage());
+                }
+                try { // watches are regularly ended by the server, reconnect
+                    Thread.sleep(1_000);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void onEvent(final String line) {
+            final var event = (Map<String, Object>) jsonMapper.fromString(Object.class, line);
+            final var metadata = (Map<String, Object>) ((Map<String, Object>) event.getOrDefault("object", Map.of()))
+                    .getOrDefault("metadata", Map.of());
+            final var type = String.valueOf(event.get("type"));
+            if ("DELETED".equals(type) || ("MODIFIED".equals(type) && metadata.get("deletionTimestamp") != null)) {
+                final var pod = String.valueOf(metadata.get("name"));
+                logger.fine(() -> "Pod '" + pod + "' of connection '" + connectionName + "' is going away, invalidating it");
+                podCache.invalidate(configuration, pod);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            thread.interrupt();
+        }
+    }
+
+    public record ForwardingContext(KubernetesClient client, LocalProxy proxy, AutoCloseable watch) implements AutoCloseable {
         @Override
         public void close() throws Exception {
+            if (watch != null) {
+                watch.close();
+            }
             if (client != null) {
                 client.close();
             }
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.k8s;
+
+import java.net.URI;
+
+// websocket URI to use for next local client, it can change if the pod is rescheduled
+public interface PortForwardTarget {
+    URI uri();
+
+    // called when the websocket can't be opened, returns true if the target changed and connecting again makes sense
+    default boolean refresh(final URI failed) {
+        return false;
+    }
+
+    static PortForwardTarget of(final URI uri) {
+        return () -> uri;
+    }
+}
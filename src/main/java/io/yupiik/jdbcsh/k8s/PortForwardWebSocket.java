@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.net.http.WebSocket;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -29,14 +31,97 @@ import static java.util.logging.Level.SEVERE;
 public class PortForwardWebSocket implements WebSocket.Listener {
     private final SocketChannel local;
     private final Consumer<CompletionStage<?>> pendingPromiseConsumer;
+    private final long maxOutboundBytes;
+    private final Runnable onWritePending;
+    private final TunnelTraffic traffic;
 
     private volatile boolean skipIncrement = false;
     private final AtomicInteger messages = new AtomicInteger();
     private boolean first = true;
 
+    // data the local client didn't accept yet, next messages are only requested when there is room
+    private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+    private long outboundBytes;
+    private WebSocket pendingRequest;
+    private boolean closeWhenDrained;
+    private long received; // bytes to forward to the local client
+
     public PortForwardWebSocket(final SocketChannel fwdClient, final Consumer<CompletionStage<?>> pendingPromiseConsumer) {
+        this(fwdClient, pendingPromiseConsumer, Long.MAX_VALUE, () -> {
+        });
+    }
+
+    public PortForwardWebSocket(final SocketChannel fwdClient, final Consumer<CompletionStage<?>> pendingPromiseConsumer,
+                                final long maxOutboundBytes, final Runnable onWritePending) {
+        this(fwdClient, pendingPromiseConsumer, maxOutboundBytes, onWritePending, new TunnelTraffic());
+    }
+
+    /**
+     * @param fwdClient              local client channel (non blocking).
+     * @param pendingPromiseConsumer tracks promises to await before closing.
+     * @param maxOutboundBytes       max bytes queued for the local client before we stop requesting websocket messages.
+     * @param onWritePending         called when some data is queued, {@link #onWritable()} must be called once the channel is writable.
+     * @param traffic                counters of the tunnel the local client belongs to.
+     */
+    public PortForwardWebSocket(final SocketChannel fwdClient, final Consumer<CompletionStage<?>> pendingPromiseConsumer,
+                                final long maxOutboundBytes, final Runnable onWritePending, final TunnelTraffic traffic) {
         this.local = fwdClient;
         this.pendingPromiseConsumer = pendingPromiseConsumer;
+        this.maxOutboundBytes = maxOutboundBytes;
+        this.onWritePending = onWritePending;
+        this.traffic = traffic;
+    }
+
+    /**
+     * @return {@code true} if there is still some data to write.
+     */
+    public boolean onWritable() {
+        return onWritable(() -> {
+        });
+    }
+
+    /**
+     * @param onDrained called under the lock once everything is written, before a concurrent {@link #forward} can queue data
+     *                  and call {@code onWritePending}, so it can stop watching the writability without losing a notification.
+     * @return {@code true} if there is still some data to write.
+     */
+    public boolean onWritable(final Runnable onDrained) {
+        final WebSocket toRequest;
+        final boolean remaining;
+        synchronized (this) {
+            try {
+                while (!outbound.isEmpty()) {
+                    final var head = outbound.peekFirst();
+                    outboundBytes -= local.write(head);
+                    if (head.hasRemaining()) {
+                        break;
+                    }
+                    outbound.pollFirst();
+                }
+            } catch (final IOException e) {
+                logger().log(SEVERE, e, e::getMessage);
+                outbound.clear();
+                outboundBytes = 0;
+            }
+
+            if (pendingRequest != null && outboundBytes < maxOutboundBytes) {
+                toRequest = pendingRequest;
+                pendingRequest = null;
+            } else {
+                toRequest = null;
+            }
+            if (outbound.isEmpty() && closeWhenDrained) {
+                closeLocal();
+            }
+            remaining = !outbound.isEmpty();
+            if (!remaining) {
+                onDrained.run();
+            }
+        }
+        if (toRequest != null) { // outside the lock since the websocket can deliver next message in this thread
+            toRequest.request(1);
+        }
+        return remaining;
     }
 
     @Override
@@ -67,19 +152,46 @@ public class PortForwardWebSocket implements WebSocket.Listener {
             first = false;
         }
 
-        while (data.hasRemaining()) {
+        forward(webSocket, data, true);
+        if (last) {
+            first = true;
+        }
+        return null;
+    }
+
+    // writes data to the local client and requests next message if there is still room in the outbound queue
+    synchronized void forward(final WebSocket webSocket, final ByteBuffer data, final boolean requestNext) {
+        received += data.remaining();
+        traffic.onBytesIn(data.remaining());
+        if (outbound.isEmpty()) {
             try {
-                local.write(data);
+                while (data.hasRemaining() && local.write(data) > 0) {
+                    // no-op, write while the socket accepts data
+                }
             } catch (final IOException e) {
                 logger().log(SEVERE, e, e::getMessage);
-                break;
+                data.position(data.limit());
             }
         }
-        webSocket.request(1);
-        if (last) {
-            first = true;
+        if (data.hasRemaining()) { // socket buffer is full, queue a copy since data can be reused once we return
+            final var copy = ByteBuffer.allocate(data.remaining()).put(data).flip();
+            outbound.add(copy);
+            outboundBytes += copy.remaining();
+            onWritePending.run();
         }
-        return null;
+
+        if (!requestNext) {
+            return;
+        }
+        if (outboundBytes < maxOutboundBytes) {
+            webSocket.request(1);
+        } else {
+            pendingRequest = webSocket;
+        }
+    }
+
+    public synchronized long received() {
+        return received;
     }
 
     @Override
@@ -90,7 +202,17 @@ public class PortForwardWebSocket implements WebSocket.Listener {
     }
 
     @Override
-    public CompletionStage<?> onClose(final WebSocket webSocket, final int statusCode, final String reason) {
+    public synchronized CompletionStage<?> onClose(final WebSocket webSocket, final int statusCode, final String reason) {
+        if (outbound.isEmpty()) {
+            closeLocal();
+        } else { // let the local client get the end of the data
+            closeWhenDrained = true;
+        }
+        logger().finest(() -> "Closing k8s ws connection.");
+        return null;
+    }
+
+    private void closeLocal() {
         try {
             if (local.isConnected()) {
                 local.close();
@@ -98,8 +220,6 @@ public class PortForwardWebSocket implements WebSocket.Listener {
         } catch (final IOException e) {
             // no-op
         }
-        logger().finest(() -> "Closing k8s ws connection.");
-        return null;
     }
 
     private Logger logger() {
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.k8s;
+
+import io.yupiik.jdbcsh.configuration.KubernetesPortForwardConfiguration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.WARNING;
+
+// shares port forwarding contexts (k8s client, pod discovery, local proxy) between connections with the same k8s configuration
+public class TunnelRegistry implements AutoCloseable {
+    private final Logger logger = Logger.getLogger(TunnelRegistry.class.getName());
+
+    private final BiFunction<KubernetesPortForwardConfiguration, String, PortForward> portForwardFactory;
+    private final Map<KubernetesPortForwardConfiguration, Tunnel> tunnels = new ConcurrentHashMap<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile ScheduledExecutorService scheduler;
+
+    public TunnelRegistry(final BiFunction<KubernetesPortForwardConfiguration, String, PortForward> portForwardFactory) {
+        this.portForwardFactory = portForwardFactory;
+    }
+
+    public Lease acquire(final KubernetesPortForwardConfiguration configuration, final String connectionName) {
+        if (closed.get()) {
+            throw new IllegalStateException("Tunnel registry closed");
+        }
+        return tunnels.computeIfAbsent(configuration, c -> new Tunnel(c, connectionName)).acquire();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        tunnels.values().forEach(Tunnel::forceClose);
+        tunnels.clear();
+    }
+
+    private ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            synchronized (this) {
+                if (scheduler == null) {
+                    scheduler = newSingleThreadScheduledExecutor(task -> {
+                        final var thread = new Thread(task, TunnelRegistry.class.getName() + "-expiration");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    public record Lease(LocalProxy proxy, AutoCloseable onClose) implements AutoCloseable {
+        @Override
+        public void close() throws Exception {
+            onClose.close();
+        }
+    }
+
+    private class Tunnel {
+        private final KubernetesPortForwardConfiguration configuration;
+        private final String connectionName;
+        private final long idleTimeout;
+
+        private PortForward.ForwardingContext context;
+        private int references;
+        private ScheduledFuture<?> expiration;
+
+        private Tunnel(final KubernetesPortForwardConfiguration configuration, final String connectionName) {
+            this.configuration = configuration;
+            this.connectionName = connectionName;
+            this.idleTimeout = configuration.tunnelIdleTimeout() == 0 ? 60_000 : configuration.tunnelIdleTimeout();
+        }
+
+        private synchronized Lease acquire() {
+            if (expiration != null) {
+                expiration.cancel(false);
+                expiration = null;
+            }
+            if (context == null) {
+                context = portForwardFactory.apply(configuration, connectionName).launch();
+            }
+            references++;
+
+            final var released = new AtomicBoolean();
+            return new Lease(context.proxy(), () -> {
+                if (released.compareAndSet(false, true)) {
+                    release();
+                }
+            });
+        }
+
+        private synchronized void release() {
+            if (--references > 0 || context == null) {
+                return;
+            }
+            if (idleTimeout < 0 || closed.get()) {
+                doClose();
+            } else {
+                expiration = scheduler().schedule(this::expire, idleTimeout, MILLISECONDS);
+            }
+        }
+
+        private synchronized void expire() {
+            expiration = null;
+            if (references == 0) {
+                doClose();
+            }
+        }
+
+        private synchronized void forceClose() {
+            if (expiration != null) {
+                expiration.cancel(false);
+                expiration = null;
+            }
+            doClose();
+        }
+
+        private void doClose() {
+            if (context == null) {
+                return;
+            }
+            try {
+                context.close();
+            } catch (final Exception e) {
+                logger.log(WARNING, e, () -> "Can't close tunnel of connection '" + connectionName + "' properly: " + e.getMessage());
+            } finally {
+                context = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.k8s;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// cumulated traffic of the tunnels of a connection, it outlives the proxies (idle timeout) to give totals since startup
+public class TunnelTraffic {
+    private final LongAdder clients = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    void onClient() {
+        clients.increment();
+    }
+
+    void onBytesIn(final long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    void onBytesOut(final long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    public long clients() {
+        return clients.sum();
+    }
+
+    // bytes received from the pods
+    public long bytesIn() {
+        return bytesIn.sum();
+    }
+
+    // bytes sent to the pods
+    public long bytesOut() {
+        return bytesOut.sum();
+    }
+
+    public void reset() {
+        clients.reset();
+        bytesIn.reset();
+        bytesOut.reset();
+    }
+}
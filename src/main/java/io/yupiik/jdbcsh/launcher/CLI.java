@@ -46,6 +46,12 @@ public class CLI {
                         final StdIO stdIO,
                         final State state,
                         final RuntimeContainer container) {
+        try (final var exporter = metricsExporter(args, state)) {
+            run(args, stdIO, state, container);
+        }
+    }
+
+    private void run(final Args args, final StdIO stdIO, final State state, final RuntimeContainer container) {
         boolean skipDefaultRc = false;
         if (args.args() != null) {
             skipDefaultRc = args.args().contains("-sdrc");
@@ -76,25 +82,44 @@ public class CLI {
         startInteractive(state, stdIO);
     }
 
+    private MetricsExporter metricsExporter(final Args args, final State state) {
+        if (args.args() == null) {
+            return null;
+        }
+        final int file = args.args().indexOf("-metrics");
+        final int port = args.args().indexOf("-metrics-port");
+        if (file < 0 && port < 0) {
+            return null;
+        }
+        final int linger = args.args().indexOf("-metrics-linger");
+        return new MetricsExporter(
+                state.metrics(),
+                file >= 0 ? Path.of(args.args().get(file + 1)) : null,
+                port >= 0 ? Integer.parseInt(args.args().get(port + 1)) : -1,
+                linger >= 0 ? Long.parseLong(args.args().get(linger + 1)) * 1_000 : 0);
+    }
+
     private void startInteractive(final State state, final StdIO stdIO) {
         // final var console = System.console(); // does not always work in terminals (if not a tty)
         final var scanner = new Scanner(stdIO.stdin()); // don't close! done by caller if needed (jvm most of the time)
-        while (true) {
-            try {
-                final var prompt = state.getCurrentPrompt();
-                stdIO.stdout().print(prompt);
-                final var command = scanner.nextLine();
-                final var stripped = command.strip();
-                if ("exit".equalsIgnoreCase(stripped) || "quit".equalsIgnoreCase(stripped)) {
-                    return;
+        try (final var runner = new CommandRunner(state, stdIO.stderr())) { // Ctrl+C cancels the running command
+            while (true) {
+                try {
+                    final var prompt = state.getCurrentPrompt();
+                    stdIO.stdout().print(prompt);
+                    final var command = scanner.nextLine();
+                    final var stripped = command.strip();
+                    if ("exit".equalsIgnoreCase(stripped) || "quit".equalsIgnoreCase(stripped)) {
+                        return;
+                    }
+                    runner.execute(() -> executor.execute(command));
+                } catch (final CommandExecutionException e) {
+                    stdIO.stderr().println("Command execution failed:");
+                    e.getCause().printStackTrace(stdIO.stderr());
+                } catch (final RuntimeException re) {
+                    stdIO.stderr().println("Command execution failed:");
+                    re.printStackTrace(stdIO.stderr());
                 }
-                executor.execute(command);
-            } catch (final CommandExecutionException e) {
-                stdIO.stderr().println("Command execution failed:");
-                e.getCause().printStackTrace(stdIO.stderr());
-            } catch (final RuntimeException re) {
-                stdIO.stderr().println("Command execution failed:");
-                re.printStackTrace(stdIO.stderr());
             }
         }
     }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.launcher;
+
+import io.yupiik.jdbcsh.service.State;
+import sun.misc.Signal;
+import sun.misc.SignalHandler;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINE;
+
+// runs interactive commands on a worker thread so Ctrl+C (SIGINT) cancels the running statements on the database side
+// instead of killing the JVM - and the tunnels/pools with it, when no command runs (or on a second Ctrl+C) the previous behavior is kept
+class CommandRunner implements SignalHandler, AutoCloseable {
+    private final State state;
+    private final PrintStream stderr;
+    private final Signal signal;
+    private final SignalHandler previous;
+
+    private volatile Thread worker;
+    private volatile boolean cancelled;
+
+    CommandRunner(final State state, final PrintStream stderr) {
+        this.state = state;
+        this.stderr = stderr;
+
+        Signal sigint = null;
+        SignalHandler previousHandler = null;
+        try {
+            sigint = new Signal("INT");
+            previousHandler = Signal.handle(sigint, this);
+        } catch (final IllegalArgumentException | UnsupportedOperationException e) { // signal not available (-Xrs, platform)
+            Logger.getLogger(getClass().getName()).log(FINE, e, () -> "Can't handle SIGINT, Ctrl+C will not cancel statements: " + e.getMessage());
+            sigint = null;
+        }
+        this.signal = sigint;
+        this.previous = previousHandler;
+    }
+
+    // returns false if the command was cancelled, failures of a cancelled command are not propagated
+    boolean execute(final Runnable command) {
+        final var error = new AtomicReference<Throwable>();
+        cancelled = false;
+        // platform thread: interrupting a virtual thread blocked on a socket closes it - and the connection with it
+        final var thread = Thread.ofPlatform().name("jdbcsh-command").daemon().unstarted(() -> {
+            try {
+                command.run();
+            } catch (final RuntimeException | Error e) {
+                error.set(e);
+            }
+        });
+        worker = thread;
+        thread.start();
+        try {
+            thread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } finally {
+            worker = null;
+        }
+
+        if (cancelled) {
+            stderr.println("Command cancelled.");
+            return false;
+        }
+        final var failure = error.get();
+        if (failure instanceof RuntimeException re) {
+            throw re;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        return true;
+    }
+
+    // returns false if there was nothing to cancel
+    boolean cancel() {
+        final var current = worker;
+        if (current == null || cancelled) {
+            return false;
+        }
+        cancelled = true;
+        final int statements = state.cancelRunningStatements();
+        stderr.println("Cancelling" + (statements > 0 ? " " + statements + " running statement(s)" : "") + "...");
+        if (statements == 0) { // unblocks waits between statements (queues, joins), never a running driver call to keep the connections usable
+            current.interrupt();
+        }
+        return true;
+    }
+
+    @Override
+    public void handle(final Signal sig) {
+        if (cancel()) {
+            return;
+        }
+        if (previous == SignalHandler.SIG_IGN) {
+            return;
+        }
+        if (previous == null || previous == SignalHandler.SIG_DFL) {
+            System.exit(128 + sig.getNumber());
+        }
+        previous.handle(sig);
+    }
+
+    @Override
+    public void close() {
+        if (signal != null && previous != null) {
+            Signal.handle(signal, previous);
+        }
+    }
+}
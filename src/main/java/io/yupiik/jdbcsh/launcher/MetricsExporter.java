@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.launcher;
+
+import com.sun.net.httpserver.HttpServer;
+import io.yupiik.jdbcsh.metrics.Metrics;
+import io.yupiik.jdbcsh.metrics.OpenMetrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// exposes the accumulated metrics in OpenMetrics text format for batch runs (-c ... -ni):
+// on a local http endpoint while the process runs (/metrics) and/or in a file written at exit
+class MetricsExporter implements AutoCloseable {
+    private final Metrics metrics;
+    private final Path file; // null when disabled
+    private final long lingerMillis;
+    private final HttpServer server; // null when disabled
+
+    MetricsExporter(final Metrics metrics, final Path file, final int port, final long lingerMillis) {
+        this.metrics = metrics;
+        this.file = file;
+        this.lingerMillis = lingerMillis;
+        this.server = port >= 0 ? startServer(port) : null;
+    }
+
+    int port() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (file != null) {
+                try {
+                    if (file.getParent() != null) {
+                        Files.createDirectories(file.getParent());
+                    }
+                    Files.writeString(file, OpenMetrics.toText(metrics));
+                } catch (final IOException e) {
+                    throw new UncheckedIOException("Can't write metrics to '" + file + "'", e);
+                }
+            }
+            if (server != null && lingerMillis > 0) { // let the scraper get the final values
+                try {
+                    Thread.sleep(lingerMillis);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } finally {
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+
+    private HttpServer startServer(final int port) {
+        try {
+            final var httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            httpServer.createContext("/metrics", exchange -> {
+                try (exchange) {
+                    if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                        exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    final var payload = OpenMetrics.toText(metrics).getBytes(UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", OpenMetrics.CONTENT_TYPE);
+                    if ("HEAD".equals(exchange.getRequestMethod())) {
+                        exchange.sendResponseHeaders(200, -1);
+                        return;
+                    }
+                    exchange.sendResponseHeaders(200, payload.length);
+                    exchange.getResponseBody().write(payload);
+                }
+            });
+            httpServer.setExecutor(null); // a single background thread is enough for a scraper
+            httpServer.start();
+            Logger.getLogger(getClass().getName()).info(() -> "Metrics available on http://localhost:" + httpServer.getAddress().getPort() + "/metrics");
+            return httpServer;
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Can't start metrics endpoint on port " + port, e);
+        }
+    }
+}
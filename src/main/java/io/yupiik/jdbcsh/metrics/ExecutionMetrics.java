@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.metrics;
+
+// timed executions (statements, commands, connection acquisitions) of a connection, alias or command,
+// rows and rendered are only used for statements
+public class ExecutionMetrics {
+    private final LatencyHistogram latencies = new LatencyHistogram(); // microseconds
+    private long sum; // microseconds
+    private long errors;
+    private long rows;
+    private long rendered;
+
+    synchronized void record(final long durationNanos, final long rows, final long rendered, final boolean success) {
+        final long micros = durationNanos / 1_000;
+        latencies.record(micros);
+        sum += micros;
+        if (!success) {
+            errors++;
+        }
+        this.rows += Math.max(0, rows);
+        this.rendered += Math.max(0, rendered);
+    }
+
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(
+                latencies.count(), errors, sum,
+                latencies.percentile(50), latencies.percentile(95), latencies.percentile(99), latencies.max(),
+                rows, rendered);
+    }
+
+    // latencies are in microseconds, rendered is the number of chars written by the formatters
+    public record Snapshot(long count, long errors, long sum, long p50, long p95, long p99, long max, long rows, long rendered) {
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.metrics;
+
+import io.yupiik.jdbcsh.k8s.TunnelTraffic;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// in memory metrics since startup (or last reset), see stats command
+public class Metrics {
+    private final Map<String, ExecutionMetrics> connections = new ConcurrentHashMap<>();
+    private final Map<String, ExecutionMetrics> aliases = new ConcurrentHashMap<>();
+    private final Map<String, ExecutionMetrics> commands = new ConcurrentHashMap<>();
+    private final Map<String, ExecutionMetrics> acquisitions = new ConcurrentHashMap<>();
+    private final Map<String, TunnelTraffic> tunnels = new ConcurrentHashMap<>();
+
+    public void onStatement(final String connection, final String alias,
+                            final long durationNanos, final long rows, final long rendered, final boolean success) {
+        connections.computeIfAbsent(connection, k -> new ExecutionMetrics()).record(durationNanos, rows, rendered, success);
+        if (alias != null) {
+            aliases.computeIfAbsent(alias, k -> new ExecutionMetrics()).record(durationNanos, rows, rendered, success);
+        }
+    }
+
+    public void onCommand(final String command, final long durationNanos, final boolean success) {
+        commands.computeIfAbsent(command, k -> new ExecutionMetrics()).record(durationNanos, 0, 0, success);
+    }
+
+    // time to get a connection (pool borrowing, creation, tunnel setup)
+    public void onConnectionAcquisition(final String connection, final long durationNanos, final boolean success) {
+        acquisitions.computeIfAbsent(connection, k -> new ExecutionMetrics()).record(durationNanos, 0, 0, success);
+    }
+
+    // shared by the successive proxies of the connection
+    public TunnelTraffic tunnel(final String connection) {
+        return tunnels.computeIfAbsent(connection, k -> new TunnelTraffic());
+    }
+
+    public Map<String, ExecutionMetrics.Snapshot> connections() {
+        return snapshot(connections);
+    }
+
+    public Map<String, ExecutionMetrics.Snapshot> aliases() {
+        return snapshot(aliases);
+    }
+
+    public Map<String, ExecutionMetrics.Snapshot> commands() {
+        return snapshot(commands);
+    }
+
+    public Map<String, ExecutionMetrics.Snapshot> connectionAcquisitions() {
+        return snapshot(acquisitions);
+    }
+
+    public Map<String, TunnelTraffic> tunnels() {
+        return new TreeMap<>(tunnels);
+    }
+
+    public void reset() {
+        connections.clear();
+        aliases.clear();
+        commands.clear();
+        acquisitions.clear();
+        tunnels.values().forEach(TunnelTraffic::reset); // still referenced by the running proxies
+    }
+
+    private Map<String, ExecutionMetrics.Snapshot> snapshot(final Map<String, ExecutionMetrics> metrics) {
+        final var snapshot = new TreeMap<String, ExecutionMetrics.Snapshot>();
+        metrics.forEach((name, value) -> snapshot.put(name, value.snapshot()));
+        return snapshot;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.metrics;
+
+import io.yupiik.jdbcsh.k8s.TunnelTraffic;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+// OpenMetrics text exposition (https://openmetrics.io) of the accumulated metrics, durations are summaries in seconds
+public final class OpenMetrics {
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private OpenMetrics() {
+        // no-op
+    }
+
+    public static String toText(final Metrics metrics) {
+        final var out = new StringBuilder();
+        try {
+            write(metrics, out);
+        } catch (final IOException e) { // can't happen with a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    public static void write(final Metrics metrics, final Appendable out) throws IOException {
+        final var connections = metrics.connections();
+        summary(out, "jdbcsh_statement_duration_seconds", "Statement execution duration.", "connection", connections);
+        counter(out, "jdbcsh_statement_errors", null, "Failed statements.", "connection", connections, ExecutionMetrics.Snapshot::errors);
+        counter(out, "jdbcsh_statement_rows", null, "Fetched or updated rows.", "connection", connections, ExecutionMetrics.Snapshot::rows);
+        counter(out, "jdbcsh_statement_rendered_chars", null, "Chars written by the formatters.", "connection", connections, ExecutionMetrics.Snapshot::rendered);
+
+        final var aliases = metrics.aliases();
+        summary(out, "jdbcsh_alias_duration_seconds", "Statement alias execution duration.", "alias", aliases);
+        counter(out, "jdbcsh_alias_errors", null, "Failed statement alias executions.", "alias", aliases, ExecutionMetrics.Snapshot::errors);
+
+        final var commands = metrics.commands();
+        summary(out, "jdbcsh_command_duration_seconds", "Command execution duration.", "command", commands);
+        counter(out, "jdbcsh_command_errors", null, "Failed commands.", "command", commands, ExecutionMetrics.Snapshot::errors);
+
+        final var acquisitions = metrics.connectionAcquisitions();
+        summary(out, "jdbcsh_connection_acquisition_duration_seconds", "Time to get a connection (pool, creation, tunnel).", "connection", acquisitions);
+        counter(out, "jdbcsh_connection_acquisition_errors", null, "Failed connection acquisitions.", "connection", acquisitions, ExecutionMetrics.Snapshot::errors);
+
+        final Map<String, TunnelTraffic> tunnels = metrics.tunnels();
+        counter(out, "jdbcsh_tunnel_clients", null, "Local clients accepted by the kubernetes tunnels.", "connection", tunnels, TunnelTraffic::clients);
+        counter(out, "jdbcsh_tunnel_received_bytes", "bytes", "Bytes received from the pods.", "connection", tunnels, TunnelTraffic::bytesIn);
+        counter(out, "jdbcsh_tunnel_sent_bytes", "bytes", "Bytes sent to the pods.", "connection", tunnels, TunnelTraffic::bytesOut);
+
+        out.append("# EOF\n");
+    }
+
+    private static void summary(final Appendable out, final String name, final String help, final String label,
+                                final Map<String, ExecutionMetrics.Snapshot> values) throws IOException {
+        if (values.isEmpty()) {
+            return;
+        }
+        header(out, name, "summary", "seconds", help);
+        for (final var entry : values.entrySet()) {
+            final var labelValue = label + "=\"" + escape(entry.getKey()) + '"';
+            final var snapshot = entry.getValue();
+            sample(out, name, labelValue + ",quantile=\"0.5\"", seconds(snapshot.p50()));
+            sample(out, name, labelValue + ",quantile=\"0.95\"", seconds(snapshot.p95()));
+            sample(out, name, labelValue + ",quantile=\"0.99\"", seconds(snapshot.p99()));
+            sample(out, name + "_sum", labelValue, seconds(snapshot.sum()));
+            sample(out, name + "_count", labelValue, Long.toString(snapshot.count()));
+        }
+    }
+
+    private static <T> void counter(final Appendable out, final String name, final String unit, final String help, final String label,
+                                    final Map<String, T> values, final ToLongFunction<T> value) throws IOException {
+        if (values.isEmpty()) {
+            return;
+        }
+        header(out, name, "counter", unit, help);
+        for (final var entry : values.entrySet()) {
+            sample(out, name + "_total", label + "=\"" + escape(entry.getKey()) + '"', Long.toString(value.applyAsLong(entry.getValue())));
+        }
+    }
+
+    private static void header(final Appendable out, final String name, final String type, final String unit, final String help) throws IOException {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        if (unit != null) {
+            out.append("# UNIT ").append(name).append(' ').append(unit).append('\n');
+        }
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private static void sample(final Appendable out, final String name, final String labels, final String value) throws IOException {
+        out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String seconds(final long micros) {
+        return BigDecimal.valueOf(micros, 6).toPlainString();
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
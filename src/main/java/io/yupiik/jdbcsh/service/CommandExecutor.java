@@ -32,12 +32,15 @@ public class CommandExecutor {
     private final Map<String, CliCommand<? extends Runnable>> commands;
     private final Configuration configuration;
     private final CommandLineParser parser;
+    private final State state;
     private CommandArgs currentArgs;
 
-    public CommandExecutor(final List<CliCommand<? extends Runnable>> allCommands, final Configuration configuration, final CommandLineParser parser) {
+    public CommandExecutor(final List<CliCommand<? extends Runnable>> allCommands, final Configuration configuration, final CommandLineParser parser,
+                           final State state) {
         this.commands = allCommands == null ? null : allCommands.stream().collect(toMap(CliCommand::name, identity()));
         this.configuration = configuration;
         this.parser = parser;
+        this.state = state;
     }
 
     public void execute(final String command) {
@@ -48,12 +51,17 @@ public class CommandExecutor {
 
         final var cmdName = command.substring(0, space);
         final var cmd = commands.get(cmdName);
-        final var args = parser.parse(cmd == null && !"help".equalsIgnoreCase(cmdName) ? "statement " + command : command);
+        final boolean statement = cmd == null && !"help".equalsIgnoreCase(cmdName);
+        final var args = parser.parse(statement ? "statement " + command : command);
         currentArgs = new CommandArgs(command, args); // for now we are not multi-threaded but could be a thread local or scoped instance
+        final long start = System.nanoTime();
+        boolean success = false;
         try {
             CliAwaiter.of(new Args(args), configuration, commands).await();
+            success = true;
         } finally {
             currentArgs = null;
+            state.metrics().onCommand(statement ? "statement" : cmdName, System.nanoTime() - start, success);
         }
     }
 
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.service;
+
+import io.yupiik.jdbcsh.configuration.ConnectionPoolConfiguration;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.logging.Level.WARNING;
+
+public class ConnectionPool implements AutoCloseable {
+    private final Logger logger = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final String name;
+    private final Supplier<State.CloseableConnection> factory;
+    private final int minIdle;
+    private final int maxIdle;
+    private final long idleTimeout;
+    private final long maxLifetime;
+    private final int validationTimeout;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>(); // LIFO to reuse the warmest connection
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(final String name, final ConnectionPoolConfiguration configuration,
+                          final Supplier<State.CloseableConnection> factory) {
+        this.name = name;
+        this.factory = factory;
+        this.minIdle = Math.max(0, configuration.minIdle());
+        this.maxIdle = configuration.maxIdle() <= 0 ? 8 : Math.max(minIdle, configuration.maxIdle());
+        this.idleTimeout = configuration.idleTimeout();
+        this.maxLifetime = configuration.maxLifetime();
+        this.validationTimeout = configuration.validationTimeout() <= 0 ? 5 : configuration.validationTimeout();
+
+        if (minIdle > 0 || idleTimeout > 0 || maxLifetime > 0) {
+            evictor = newSingleThreadScheduledExecutor(task -> {
+                final var thread = new Thread(task, ConnectionPool.class.getName() + "-" + name + "-evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            final long period = Math.max(1_000, Math.min(
+                    idleTimeout > 0 ? idleTimeout : 60_000,
+                    maxLifetime > 0 ? maxLifetime : 60_000) / 2);
+            evictor.execute(this::ensureMinIdle); // warm up the pool
+            evictor.scheduleWithFixedDelay(this::evict, period, period, MILLISECONDS);
+        } else {
+            evictor = null;
+        }
+    }
+
+    public State.CloseableConnection borrow() {
+        if (closed.get()) {
+            throw new IllegalStateException("Pool '" + name + "' closed");
+        }
+
+        PooledConnection pooled;
+        while ((pooled = pollIdle()) != null) {
+            if (isUsable(pooled, System.nanoTime())) {
+                return wrap(pooled, 0);
+            }
+            destroy(pooled);
+        }
+        final var created = factory.get();
+        return wrap(new PooledConnection(created, System.nanoTime()), created.tunnelSetupNanos());
+    }
+
+    public int idleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        final var toClose = new ArrayList<PooledConnection>();
+        synchronized (idle) {
+            toClose.addAll(idle);
+            idle.clear();
+        }
+        toClose.forEach(this::destroy);
+    }
+
+    private State.CloseableConnection wrap(final PooledConnection pooled, final long tunnelSetupNanos) {
+        return new State.CloseableConnection(pooled.delegate.connection(), () -> release(pooled), tunnelSetupNanos);
+    }
+
+    private void release(final PooledConnection pooled) {
+        final long now = System.nanoTime();
+        try {
+            if (closed.get() || pooled.delegate.connection().isClosed() || isExpired(pooled, now)) {
+                destroy(pooled);
+                return;
+            }
+            if (!pooled.delegate.connection().getAutoCommit()) { // don't leak a pending transaction to next borrower
+                pooled.delegate.connection().rollback();
+            }
+        } catch (final SQLException e) {
+            logger.log(WARNING, e, () -> "Can't reset connection of pool '" + name + "', dropping it: " + e.getMessage());
+            destroy(pooled);
+            return;
+        }
+
+        pooled.lastUsed = now;
+        if (!offerIdle(pooled)) {
+            destroy(pooled);
+        }
+    }
+
+    private boolean offerIdle(final PooledConnection pooled) {
+        synchronized (idle) {
+            if (closed.get() || idle.size() >= maxIdle) {
+                return false;
+            }
+            idle.addFirst(pooled);
+            return true;
+        }
+    }
+
+    private boolean isUsable(final PooledConnection pooled, final long now) {
+        if (isExpired(pooled, now)) {
+            return false;
+        }
+        try {
+            return pooled.delegate.connection().isValid(validationTimeout);
+        } catch (final SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isExpired(final PooledConnection pooled, final long now) {
+        return maxLifetime > 0 && MILLISECONDS.convert(now - pooled.created, NANOSECONDS) >= maxLifetime;
+    }
+
+    private PooledConnection pollIdle() {
+        synchronized (idle) {
+            return idle.pollFirst();
+        }
+    }
+
+    private void evict() {
+        final long now = System.nanoTime();
+        final var toClose = new ArrayList<PooledConnection>();
+        synchronized (idle) {
+            final var it = idle.descendingIterator(); // oldest first
+            while (it.hasNext()) {
+                final var pooled = it.next();
+                if (isExpired(pooled, now) || (idleTimeout > 0 && idle.size() > minIdle &&
+                        MILLISECONDS.convert(now - pooled.lastUsed, NANOSECONDS) >= idleTimeout)) {
+                    it.remove();
+                    toClose.add(pooled);
+                }
+            }
+        }
+        toClose.forEach(this::destroy);
+        ensureMinIdle();
+    }
+
+    private void ensureMinIdle() {
+        while (!closed.get() && idleCount() < minIdle) {
+            final PooledConnection pooled;
+            try {
+                pooled = new PooledConnection(factory.get(), System.nanoTime());
+            } catch (final RuntimeException re) {
+                logger.log(WARNING, re, () -> "Can't create idle connection for pool '" + name + "': " + re.getMessage());
+                return;
+            }
+            if (!offerIdle(pooled)) {
+                destroy(pooled);
+                return;
+            }
+        }
+    }
+
+    private void destroy(final PooledConnection pooled) {
+        try {
+            pooled.delegate.close();
+        } catch (final Exception e) {
+            logger.log(WARNING, e, () -> "Can't close pooled connection of '" + name + "' properly: " + e.getMessage());
+        }
+    }
+
+    private static final class PooledConnection {
+        private final State.CloseableConnection delegate;
+        private final long created;
+        private volatile long lastUsed;
+
+        private PooledConnection(final State.CloseableConnection delegate, final long created) {
+            this.delegate = delegate;
+            this.created = created;
+            this.lastUsed = created;
+        }
+    }
+}
@@ -21,16 +21,25 @@ import io.yupiik.fusion.json.JsonMapper;
 import io.yupiik.jdbcsh.command.error.CommandExecutionException;
 import io.yupiik.jdbcsh.configuration.JDBCConnection;
 import io.yupiik.jdbcsh.configuration.StatementAlias;
+import io.yupiik.jdbcsh.jfr.ConnectionCreationEvent;
+import io.yupiik.jdbcsh.k8s.PodCache;
 import io.yupiik.jdbcsh.k8s.PortForward;
+import io.yupiik.jdbcsh.k8s.TunnelRegistry;
+import io.yupiik.jdbcsh.metrics.Metrics;
 import io.yupiik.jdbcsh.table.TableFormatter;
 
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 import static java.util.Optional.ofNullable;
@@ -41,17 +50,26 @@ public class State {
     private final JsonMapper jsonMapper;
 
     private JDBCConnection connection;
-    private TableFormatter.TableOptions tableOptions = new TableFormatter.TableOptions(false, "-");
+    private TableFormatter.TableOptions tableOptions = new TableFormatter.TableOptions(false, "-", 1000);
     private String prompt = "$database> ";
     private List<StatementAlias> globalAliases = List.of();
     private CloseableConnection lastConnection;
+    private final Map<JDBCConnection, ConnectionPool> pools = new ConcurrentHashMap<>();
+    private final TunnelRegistry tunnels;
+    private final Metrics metrics = new Metrics();
+    private final Set<Statement> runningStatements = ConcurrentHashMap.newKeySet();
 
     public State(final JsonMapper jsonMapper) {
         this.jsonMapper = jsonMapper;
+        final var podCache = new PodCache();
+        this.tunnels = new TunnelRegistry((conf, name) -> new PortForward(
+                conf, name, this.jsonMapper, podCache, metrics.tunnel(ofNullable(name).orElse("database1"))));
     }
 
     @Destroy
     protected void destroy() {
+        pools.values().forEach(ConnectionPool::close);
+        pools.clear();
         if (lastConnection != null) {
             try {
                 lastConnection.closeable().close();
@@ -59,6 +77,7 @@ public class State {
                 Logger.getLogger(getClass().getName()).log(WARNING, e, () -> "Can't close last connection properly: " + e.getMessage());
             }
         }
+        tunnels.close();
     }
 
     public void setConnection(final JDBCConnection connection) {
@@ -78,6 +97,10 @@ public class State {
         return connection != null;
     }
 
+    public JDBCConnection connectionConfiguration() {
+        return connection;
+    }
+
     public Optional<String> findByAlias(final String sql) {
         return ofNullable(connection)
                 .map(JDBCConnection::aliases)
@@ -93,32 +116,91 @@ public class State {
     }
 
     public CloseableConnection connection() {
+        return acquire(connection, this::currentConnection);
+    }
+
+    private CloseableConnection currentConnection() {
         if (lastConnection != null) {
             return new CloseableConnection(lastConnection.connection(), () -> {
             });
         }
 
-        final var freshConnection = doCreateConnection();
+        if (connection.pool() != null) {
+            return pool(connection).borrow();
+        }
+
+        final var freshConnection = doCreateConnection(connection);
         if (connection.persistent()) {
             lastConnection = freshConnection;
         }
         return freshConnection;
     }
 
-    private CloseableConnection doCreateConnection() {
+    // connection to any configured database (not only the current one), it is not kept if not pooled
+    public CloseableConnection connection(final JDBCConnection configuration) {
+        if (configuration.equals(connection)) {
+            return connection();
+        }
+        return dedicatedConnection(configuration);
+    }
+
+    // connection which can be used concurrently to the others (never the persistent one), borrowed from the pool if configured
+    public CloseableConnection dedicatedConnection(final JDBCConnection configuration) {
+        return acquire(configuration, () -> configuration.pool() != null ? pool(configuration).borrow() : doCreateConnection(configuration));
+    }
+
+    private CloseableConnection acquire(final JDBCConnection configuration, final Supplier<CloseableConnection> acquirer) {
+        final long start = System.nanoTime();
+        boolean success = false;
+        try {
+            final var acquired = acquirer.get();
+            success = true;
+            return acquired;
+        } finally {
+            metrics.onConnectionAcquisition(
+                    configuration == null ? "database1" : ofNullable(configuration.name()).orElse("database1"),
+                    System.nanoTime() - start, success);
+        }
+    }
+
+    private ConnectionPool pool(final JDBCConnection configuration) {
+        return pools.computeIfAbsent(configuration, c -> new ConnectionPool(
+                ofNullable(c.name()).orElse("database1"), c.pool(), () -> doCreateConnection(c)));
+    }
+
+    private CloseableConnection doCreateConnection(final JDBCConnection connection) {
+        final var event = new ConnectionCreationEvent();
+        event.begin();
+        CloseableConnection created = null;
+        try {
+            created = createConnection(connection);
+            return created;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.connection = connection.name();
+                event.kubernetes = connection.k8s() != null;
+                event.tunnelSetup = created == null ? 0 : created.tunnelSetupNanos();
+                event.success = created != null;
+                event.commit();
+            }
+        }
+    }
+
+    private CloseableConnection createConnection(final JDBCConnection connection) {
         if (connection.k8s() != null) {
-            final var portForward = new PortForward(
-                    connection.k8s(),
-                    connection.name(),
-                    jsonMapper);
-            final var forwarding = portForward.launch();
+            final long tunnelStart = System.nanoTime();
+            final var forwarding = tunnels.acquire(connection.k8s(), connection.name());
             try {
                 final Connection jdbc;
+                final long tunnelSetup;
                 try {
+                    final var address = forwarding.proxy().localAddress();
+                    tunnelSetup = System.nanoTime() - tunnelStart;
                     jdbc = DriverManager.getConnection(
                             connection.url()
-                                    .replace("$host", forwarding.proxy().localAddress().getHostName())
-                                    .replace("$port", Integer.toString(forwarding.proxy().localAddress().getPort())),
+                                    .replace("$host", address.getHostName())
+                                    .replace("$port", Integer.toString(address.getPort())),
                             connection.username(), connection.password());
                     if (connection.schema() != null) {
                         jdbc.setSchema(connection.schema());
@@ -150,7 +232,7 @@ public class State {
                     if (ex != null) {
                         throw ex;
                     }
-                });
+                }, tunnelSetup);
             } catch (final SQLException e) {
                 try {
                     forwarding.close();
@@ -173,6 +255,32 @@ public class State {
         }
     }
 
+    public void running(final Statement statement) {
+        runningStatements.add(statement);
+    }
+
+    public void done(final Statement statement) {
+        runningStatements.remove(statement);
+    }
+
+    // asks the databases to stop the running statements, connections stay usable
+    public int cancelRunningStatements() {
+        int cancelled = 0;
+        for (final var statement : runningStatements) {
+            try {
+                statement.cancel();
+                cancelled++;
+            } catch (final SQLException | RuntimeException e) {
+                Logger.getLogger(getClass().getName()).log(WARNING, e, () -> "Can't cancel statement: " + e.getMessage());
+            }
+        }
+        return cancelled;
+    }
+
+    public Metrics metrics() {
+        return metrics;
+    }
+
     public void setTableOptions(final TableFormatter.TableOptions tableOptions) {
         this.tableOptions = tableOptions;
     }
@@ -194,7 +302,12 @@ public class State {
         this.globalAliases = aliases;
     }
 
-    public record CloseableConnection(Connection connection, AutoCloseable closeable) implements AutoCloseable {
+    // tunnelSetupNanos is the time spent to get the k8s tunnel when the connection was just created, 0 otherwise
+    public record CloseableConnection(Connection connection, AutoCloseable closeable, long tunnelSetupNanos) implements AutoCloseable {
+        public CloseableConnection(final Connection connection, final AutoCloseable closeable) {
+            this(connection, closeable, 0);
+        }
+
         @Override
         public void close() throws Exception {
             closeable.close();
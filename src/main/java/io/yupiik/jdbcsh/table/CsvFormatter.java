@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// RFC 4180 output: headers first, CRLF line endings and fields containing a comma, a quote or a line break are quoted
+public class CsvFormatter implements RowFormatter {
+    private final Appendable out;
+    private final StringBuilder buffer = new StringBuilder(); // reused for each line
+
+    public CsvFormatter(final List<String> headers, final Appendable out) {
+        this(headers, out, true);
+    }
+
+    // without header when rows are appended to an existing output (parallel exports)
+    public CsvFormatter(final List<String> headers, final Appendable out, final boolean writeHeader) {
+        this.out = out;
+        if (writeHeader) {
+            writeLine(headers);
+        }
+    }
+
+    @Override
+    public void add(final List<?> row) {
+        writeLine(row);
+    }
+
+    @Override
+    public void close() {
+        // no-op, no footer
+    }
+
+    private void writeLine(final List<?> row) {
+        buffer.setLength(0);
+        for (int i = 0; i < row.size(); i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+            appendField(buffer, RowFormatter.text(row.get(i)));
+        }
+        buffer.append("\r\n");
+        try {
+            out.append(buffer);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void appendField(final StringBuilder out, final String value) {
+        if (!needsQuotes(value)) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    private static boolean needsQuotes(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            switch (value.charAt(i)) {
+                case ',', '"', '\r', '\n' -> {
+                    return true;
+                }
+                default -> {
+                    // no-op
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// streaming RFC 4180 parser (reverse of CsvFormatter): quoted fields can contain commas, doubled quotes and line breaks,
+// lines can end with CRLF or LF, only the current row is kept in memory
+public class CsvParser implements AutoCloseable {
+    private final Reader reader;
+    private final char[] buffer;
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private boolean skipLineFeed;
+    private int columns = 8;
+    private long line = 1;
+
+    public CsvParser(final Reader reader) {
+        this(reader, 64 * 1024);
+    }
+
+    public CsvParser(final Reader reader, final int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    // line of the next row, useful for error messages
+    public long line() {
+        return line;
+    }
+
+    // returns null at the end of the input
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c < 0) {
+            return null;
+        }
+
+        final var row = new ArrayList<String>(columns);
+        field.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IllegalStateException("Unterminated quoted field at line " + line);
+                }
+                if (c == '"') {
+                    final int next = read();
+                    if (next != '"') { // end of the quoted part, next is processed as an unquoted char
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                field.append((char) c);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == '\r' || c < 0) {
+                skipLineFeed = c == '\r';
+                row.add(field.toString());
+                line++;
+                break;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        columns = row.size();
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        final char c = buffer[position++];
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (c == '\n') {
+                return read();
+            }
+        }
+        return c;
+    }
+}
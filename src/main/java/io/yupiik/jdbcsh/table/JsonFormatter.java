@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import io.yupiik.fusion.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+
+// serializes each row as a JSON object (column name -> typed value) as soon as it is fetched,
+// either in a JSON array or one object per line (JSON Lines), the mapper only serializes values to keep nulls and column order
+public class JsonFormatter implements RowFormatter {
+    private final List<String> keys; // serialized names with the separator, ie "name":
+    private final JsonMapper jsonMapper;
+    private final boolean array;
+    private final Appendable out;
+    private final Writer writer;
+    private boolean first = true;
+    private boolean aborted;
+
+    public JsonFormatter(final List<String> headers, final JsonMapper jsonMapper, final boolean array, final Appendable out) {
+        this.jsonMapper = jsonMapper;
+        this.keys = uniqueNames(headers).stream().map(it -> jsonMapper.toString(it) + ':').toList();
+        this.array = array;
+        this.out = out;
+        this.writer = new AppendableWriter(out);
+    }
+
+    @Override
+    public void add(final List<?> row) {
+        if (array) {
+            write(first ? "[\n" : ",\n");
+        }
+        write("{");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                write(",");
+            }
+            write(keys.get(i));
+            final var value = toJson(row.get(i));
+            if (value == null) {
+                write("null");
+            } else {
+                jsonMapper.write(value, writer);
+            }
+        }
+        write(array ? "}" : "}\n");
+        first = false;
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+    }
+
+    @Override
+    public void close() {
+        if (!array) {
+            return;
+        }
+        if (aborted) { // no closing bracket, a parser must fail instead of reading a truncated array as a complete one
+            if (!first) {
+                write("\n");
+            }
+            return;
+        }
+        write(first ? "[]\n" : "\n]\n");
+    }
+
+    private void write(final String value) {
+        try {
+            out.append(value);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // numbers are serialized as BigDecimal which is the JSON number type of the mapper
+    static Object toJson(final Object value) {
+        return switch (value) {
+            case null -> null;
+            case String s -> s;
+            case Boolean b -> b;
+            case BigDecimal d -> d;
+            case BigInteger i -> new BigDecimal(i);
+            case Long l -> BigDecimal.valueOf(l);
+            case Integer i -> BigDecimal.valueOf(i);
+            case Short s -> BigDecimal.valueOf(s);
+            case Byte b -> BigDecimal.valueOf(b);
+            case Double d when Double.isFinite(d) -> new BigDecimal(d.toString());
+            case Float f when Float.isFinite(f) -> new BigDecimal(f.toString());
+            case java.sql.Timestamp t -> t.toLocalDateTime().toString();
+            case java.sql.Date d -> d.toLocalDate().toString();
+            case java.sql.Time t -> t.toLocalTime().toString();
+            case byte[] bytes -> Base64.getEncoder().encodeToString(bytes);
+            default -> String.valueOf(value);
+        };
+    }
+
+    // a join can return the same column name twice, suffix duplicates to not lose values
+    private static List<String> uniqueNames(final List<String> headers) {
+        final var seen = new HashSet<String>();
+        final var names = new ArrayList<String>(headers.size());
+        for (final var header : headers) {
+            var name = header;
+            for (int i = 2; !seen.add(name); i++) {
+                name = header + '_' + i;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    // the mapper writes into this view, it must not close nor flush the output for each row
+    private static class AppendableWriter extends Writer {
+        private final Appendable out;
+
+        private AppendableWriter(final Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(final char[] chars, final int offset, final int length) throws IOException {
+            if (out instanceof Writer w) {
+                w.write(chars, offset, length);
+            } else {
+                out.append(CharBuffer.wrap(chars, offset, length));
+            }
+        }
+
+        @Override
+        public void write(final String value, final int offset, final int length) throws IOException {
+            out.append(value, offset, offset + length);
+        }
+
+        @Override
+        public void flush() {
+            // no-op
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import io.yupiik.fusion.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// renders rows as they are fetched, close() ends the output (trailing border for tables),
+// values are the JDBC ones (large objects already read) so each format can keep their type
+public interface RowFormatter extends AutoCloseable {
+    void add(List<?> row);
+
+    // the rows stopped in the middle (failing result set), close() must then not end the output as a complete one
+    default void abort() {
+        // no-op
+    }
+
+    @Override
+    void close();
+
+    static RowFormatter of(final List<String> headers, final TableFormatter.TableOptions options,
+                           final JsonMapper jsonMapper, final Appendable out) {
+        return switch (options.format()) {
+            case "csv" -> new CsvFormatter(headers, out);
+            case "json" -> new JsonFormatter(headers, jsonMapper, true, out);
+            case "jsonl" -> new JsonFormatter(headers, jsonMapper, false, out);
+            default -> new StreamingTableFormatter(headers, options, out);
+        };
+    }
+
+    static String text(final Object value) {
+        return value == null ? "" : String.valueOf(value);
+    }
+
+    static List<String> texts(final List<?> row) {
+        final var values = new ArrayList<String>(row.size());
+        for (final var value : row) {
+            values.add(text(value));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// renders the same output than TableFormatter but row by row,
+// widths are computed from the first lookAheadRows rows (+ headers) and reused for next ones
+public class StreamingTableFormatter implements RowFormatter {
+    private final TableFormatter.TableOptions options;
+    private final Appendable out;
+    private final List<String> headers;
+    private final List<List<String>> window = new ArrayList<>();
+
+    private final StringBuilder buffer = new StringBuilder(); // reused for each line/record
+    private int[] widths;
+    private int lineWidth;
+    private int maxHeaderWidth = -1;
+    private boolean hasRecords;
+    private boolean aborted;
+
+    public StreamingTableFormatter(final List<String> headers, final TableFormatter.TableOptions options, final Appendable out) {
+        this.headers = headers;
+        this.options = options;
+        this.out = out;
+        this.window.add(headers);
+    }
+
+    @Override
+    public void add(final List<?> row) {
+        final var values = RowFormatter.texts(row);
+        if (options.transpose()) {
+            writeRecord(values);
+            return;
+        }
+        if (widths != null) {
+            writeLine(values);
+            return;
+        }
+
+        window.add(values);
+        if (options.lookAheadRows() > 0 && window.size() > options.lookAheadRows() /* headers */) {
+            flushWindow();
+        }
+    }
+
+    @Override
+    public void abort() {
+        aborted = true;
+    }
+
+    @Override
+    public void close() {
+        if (aborted) { // rows already fetched are rendered but no footer, the table must not look complete
+            if (!options.transpose() && widths == null) {
+                flushWindow();
+            }
+            return;
+        }
+        if (options.transpose()) {
+            if (!hasRecords) {
+                write("\n");
+            }
+            return;
+        }
+
+        if (widths == null) {
+            flushWindow();
+        }
+        buffer.setLength(0);
+        if (!"".equals(options.lineSeparator())) {
+            TableFormatter.appendSeparator(buffer, options.lineSeparator(), lineWidth);
+        }
+        buffer.append('\n');
+        write(buffer);
+    }
+
+    private void flushWindow() {
+        widths = TableFormatter.maxWidths(window);
+        lineWidth = TableFormatter.lineWidth(widths);
+
+        buffer.setLength(0);
+        TableFormatter.appendSeparator(buffer, options.lineSeparator(), lineWidth);
+        TableFormatter.appendLine(buffer, headers, widths);
+        if (!"".equals(options.lineSeparator())) {
+            TableFormatter.appendSeparator(buffer, options.lineSeparator(), lineWidth);
+        }
+        write(buffer);
+        for (final var row : window.subList(1, window.size())) {
+            writeLine(row);
+        }
+        window.clear(); // release buffered rows
+    }
+
+    private void writeLine(final List<String> row) {
+        buffer.setLength(0);
+        TableFormatter.appendLine(buffer, row, widths);
+        write(buffer);
+    }
+
+    private void writeRecord(final List<String> data) {
+        if (maxHeaderWidth < 0) {
+            maxHeaderWidth = TableFormatter.maxWidth(headers);
+        }
+
+        buffer.setLength(0);
+        TableFormatter.appendRecord(buffer, headers, maxHeaderWidth, data, options.lineSeparator());
+        buffer.append('\n');
+        write(buffer);
+        hasRecords = true;
+    }
+
+    private void write(final CharSequence value) {
+        try {
+            out.append(value);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -15,16 +15,13 @@
  */
 package io.yupiik.jdbcsh.table;
 
-import java.util.Iterator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.Spliterator;
-import java.util.Spliterators;
-import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
-
-import static java.util.stream.Collectors.joining;
 
 public class TableFormatter {
+    private static final char[] SPACES = " ".repeat(128).toCharArray();
+
     private final List<List<String>> rows;
     private final TableOptions options;
 
@@ -38,86 +35,183 @@ public class TableFormatter {
         if (rows.isEmpty()) {
             return "";
         }
+
+        final var out = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, capacity()));
+        try {
+            render(out, null);
+        } catch (final IOException e) { // can't happen with a StringBuilder
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    // renders the table line by line (record by record when transposed) into the output, use a buffered one
+    public void render(final Appendable out) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        render(new StringBuilder(), out);
+    }
+
+    // if out is null everything is kept in the buffer
+    private void render(final StringBuilder buffer, final Appendable out) throws IOException {
         if (options.transpose()) {
             final var headers = rows.get(0);
-            final int maxHeaderWidth = (int) headers.stream().mapToLong(String::length).max().orElse(0);
-            return rows.stream()
-                    .skip(1)
-                    .map(data -> {
-                        final int maxDataWidth = (int) data.stream().mapToLong(String::length).max().orElse(0);
-                        final var lineSeparator = options.lineSeparator().repeat(maxDataWidth + maxHeaderWidth + 7 /*column separators*/) + '\n';
-                        final var headerIt = headers.iterator();
-                        final var dataIt = data.iterator();
-                        return lineSeparator +
-                                StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<String>() {
-                                            @Override
-                                            public boolean hasNext() {
-                                                return headerIt.hasNext();
-                                            }
-
-                                            @Override
-                                            public String next() {
-                                                final var name = headerIt.next();
-                                                final var content = dataIt.next();
-                                                return "| " + (name.length() == maxHeaderWidth ? "" : " ".repeat(maxHeaderWidth - name.length())) + name +
-                                                        " | " + (content.length() == maxDataWidth ? "" : " ".repeat(maxDataWidth - content.length())) + content +
-                                                        " |";
-                                            }
-                                        }, Spliterator.IMMUTABLE), false)
-                                        .collect(joining("\n", "", "\n")) +
-                                lineSeparator;
-                    })
-                    .collect(joining("\n"));
+            final int maxHeaderWidth = maxWidth(headers);
+            for (int i = 1; i < rows.size(); i++) {
+                if (i > 1) {
+                    buffer.append('\n');
+                }
+                appendRecord(buffer, headers, maxHeaderWidth, rows.get(i), options.lineSeparator());
+                emit(buffer, out);
+            }
+            return;
         }
 
         // standard tables (but poorly readable)
-        final var maxWidthPerColumn = maxWidths(rows);
-        final var lineSeparator = options.lineSeparator().repeat(
-                (int) maxWidthPerColumn.stream().mapToLong(i -> i).sum() +
-                        /*now add separators*/ 4 + (maxWidthPerColumn.size() - 1) * 3);
-        if (!"".equals(options.lineSeparator()) && !rows.isEmpty()) {
-            return Stream.concat(Stream.concat(
-                                    Stream.of(lineSeparator, formatLine(rows.get(0), maxWidthPerColumn), lineSeparator),
-                                    rows.stream().skip(1).map(row -> formatLine(row, maxWidthPerColumn))),
-                            Stream.of(lineSeparator + '\n'))
-                    .collect(joining("\n"));
-        }
-        return lineSeparator + '\n' + rows.stream().map(row -> formatLine(row, maxWidthPerColumn)).collect(joining("\n")) + lineSeparator + '\n';
+        final var widths = maxWidths(rows);
+        final int lineWidth = lineWidth(widths);
+        final boolean separator = !"".equals(options.lineSeparator());
+        appendSeparator(buffer, options.lineSeparator(), lineWidth);
+        appendLine(buffer, rows.get(0), widths);
+        if (separator) {
+            appendSeparator(buffer, options.lineSeparator(), lineWidth);
+        }
+        emit(buffer, out);
+        for (int i = 1; i < rows.size(); i++) {
+            appendLine(buffer, rows.get(i), widths);
+            emit(buffer, out);
+        }
+        if (separator) {
+            appendSeparator(buffer, options.lineSeparator(), lineWidth);
+        }
+        emit(buffer, out);
+    }
+
+    private void emit(final StringBuilder buffer, final Appendable out) throws IOException {
+        if (out != null) {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
     }
 
-    private List<Integer> maxWidths(final List<List<String>> rows) {
-        return rows.stream()
-                .map(it -> it.stream().map(String::length).toList())
-                .reduce(null, (a, b) -> {
-                    if (a == null) {
-                        return b;
-                    }
-                    final var it1 = a.iterator();
-                    final var it2 = b.iterator();
-                    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<Integer>() {
-                        @Override
-                        public boolean hasNext() {
-                            return it1.hasNext();
-                        }
-
-                        @Override
-                        public Integer next() {
-                            return Math.max(it1.next(), it2.next());
-                        }
-                    }, Spliterator.IMMUTABLE), false).toList();
-                });
+    // exact size of the rendering to avoid any resizing
+    private long capacity() {
+        final int separatorLength = options.lineSeparator().length();
+        if (options.transpose()) {
+            final var headers = rows.get(0);
+            final int maxHeaderWidth = maxWidth(headers);
+            long capacity = 0;
+            for (int i = 1; i < rows.size(); i++) {
+                final int width = maxHeaderWidth + maxWidth(rows.get(i)) + 7 /*column separators*/;
+                capacity += (width + 1L) * headers.size() + 2L * (width * (long) separatorLength + 1) + 1;
+            }
+            return capacity;
+        }
+        final int lineWidth = lineWidth(maxWidths(rows));
+        return (lineWidth + 1L) * rows.size() + 3L * (lineWidth * (long) separatorLength + 1);
     }
 
-    private String formatLine(final List<String> data, final List<Integer> maxWidthPerColumn) {
-        final var widthIt = maxWidthPerColumn.iterator();
-        return data.stream()
-                .map(it -> {
-                    final int spaces = widthIt.next() - it.length();
-                    return it + (spaces > 0 ? " ".repeat(spaces) : "");
-                })
-                .collect(joining(" | ", "| ", " |"));
+    static void appendRecord(final StringBuilder out, final List<String> headers, final int maxHeaderWidth,
+                             final List<String> data, final String lineSeparator) {
+        final int maxDataWidth = maxWidth(data);
+        final int width = maxDataWidth + maxHeaderWidth + 7 /*column separators*/;
+        appendSeparator(out, lineSeparator, width);
+        for (int i = 0; i < headers.size(); i++) {
+            final var name = headers.get(i);
+            final var content = data.get(i);
+            out.append("| ");
+            pad(out, maxHeaderWidth - name.length());
+            out.append(name).append(" | ");
+            pad(out, maxDataWidth - content.length());
+            out.append(content).append(" |\n");
+        }
+        appendSeparator(out, lineSeparator, width);
     }
 
-    public record TableOptions(boolean transpose, String lineSeparator) {
+    static int[] maxWidths(final List<List<String>> rows) {
+        final var widths = new int[rows.get(0).size()];
+        for (final var row : rows) {
+            for (int i = 0; i < widths.length; i++) {
+                final int length = row.get(i).length();
+                if (length > widths[i]) {
+                    widths[i] = length;
+                }
+            }
+        }
+        return widths;
+    }
+
+    static int maxWidth(final List<String> values) {
+        int max = 0;
+        for (final var value : values) {
+            max = Math.max(max, value.length());
+        }
+        return max;
+    }
+
+    static int lineWidth(final int[] widths) {
+        int width = 4 + (widths.length - 1) * 3; // separators
+        for (final int w : widths) {
+            width += w;
+        }
+        return width;
+    }
+
+    static void appendLine(final StringBuilder out, final List<String> data, final int[] widths) {
+        out.append("| ");
+        for (int i = 0; i < widths.length; i++) {
+            if (i > 0) {
+                out.append(" | ");
+            }
+            final var value = data.get(i);
+            out.append(value);
+            pad(out, widths[i] - value.length());
+        }
+        out.append(" |\n");
+    }
+
+    static void appendSeparator(final StringBuilder out, final String lineSeparator, final int width) {
+        if (lineSeparator.length() == 1) {
+            final char c = lineSeparator.charAt(0);
+            for (int i = 0; i < width; i++) {
+                out.append(c);
+            }
+        } else if (!lineSeparator.isEmpty()) {
+            for (int i = 0; i < width; i++) {
+                out.append(lineSeparator);
+            }
+        }
+        out.append('\n');
+    }
+
+    private static void pad(final StringBuilder out, final int spaces) {
+        int remaining = spaces;
+        while (remaining > 0) {
+            final int chunk = Math.min(remaining, SPACES.length);
+            out.append(SPACES, 0, chunk);
+            remaining -= chunk;
+        }
+    }
+
+    /**
+     * @param format {@code table}, {@code csv}, {@code json} (array) or {@code jsonl} (one object per line).
+     * @param output file to write rows to, {@code null} for the standard output.
+     */
+    public record TableOptions(boolean transpose, String lineSeparator, int lookAheadRows, String format, String output) {
+        public TableOptions {
+            if (format == null || format.isBlank()) {
+                format = "table";
+            } else if (!List.of("table", "csv", "json", "jsonl").contains(format)) {
+                throw new IllegalArgumentException("Unsupported format '" + format + "', supported ones are: table, csv, json, jsonl");
+            }
+            if (output != null && output.isBlank()) {
+                output = null;
+            }
+        }
+
+        public TableOptions(final boolean transpose, final String lineSeparator, final int lookAheadRows) {
+            this(transpose, lineSeparator, lookAheadRows, "table", null);
+        }
     }
 }
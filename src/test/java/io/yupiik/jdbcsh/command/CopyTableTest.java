@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.jdbcsh.test.InMemoryIO;
+import io.yupiik.jdbcsh.test.JDBCshTest;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CopyTableTest {
+    @JDBCshTest(value = """
+            set-connection --name target-h2
+            create table copied(id varchar(4), name varchar(16))
+            copy-table --from test-h2 --to target-h2 --query test --table copied --batchSize 1
+            select id, name from copied order by id""", createDatabase = true, rc = "src/test/resources/testrc.copy.json")
+    void copy(final Supplier<InMemoryIO> io) {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("Copied 2 rows from 'test-h2' to 'target-h2' (copied) in "), stdout);
+        assertTrue(stdout.contains("""
+                ---------------
+                | ID   | NAME |
+                ---------------
+                | 0001 | abcd |
+                | 0002 | efgh |
+                ---------------
+                """), stdout);
+    }
+
+    @JDBCshTest(value = """
+            create table copied(id varchar(4), name varchar(16))
+            copy-table --from test-h2 --to test-h2 --query test --table copied --batchSize 1
+            select count(*) as total from copied""", createDatabase = true, rc = "src/test/resources/testrc.copy.json")
+    void copySameConnection(final Supplier<InMemoryIO> io) {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("Copied 2 rows from 'test-h2' to 'test-h2' (copied) in "), stdout);
+        assertTrue(stdout.contains("| 2     |"), stdout);
+    }
+}
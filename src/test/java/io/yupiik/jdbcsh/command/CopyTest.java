@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CopyTest {
+    @Test
+    void copyOutSql() {
+        assertEquals("COPY my_table TO STDOUT WITH (FORMAT csv, HEADER)", CopyOut.toSql("my_table", "FORMAT csv, HEADER"));
+        assertEquals("COPY (select * from t where id > 1) TO STDOUT WITH (FORMAT csv, HEADER)", CopyOut.toSql(" select * from t where id > 1 ", "FORMAT csv, HEADER"));
+        assertEquals("COPY t TO STDOUT", CopyOut.toSql("t", ""));
+        assertEquals("copy t to stdout (format binary)", CopyOut.toSql("copy t to stdout (format binary)", "FORMAT csv"));
+    }
+
+    @Test
+    void copyInSql() {
+        assertEquals("COPY my_table(a, b) FROM STDIN WITH (FORMAT csv, HEADER)", CopyIn.toSql("my_table(a, b)", "FORMAT csv, HEADER"));
+        assertEquals("COPY t FROM STDIN (FORMAT text)", CopyIn.toSql("COPY t FROM STDIN (FORMAT text)", "FORMAT csv"));
+    }
+
+    @Test
+    void requiresPostgres() throws SQLException {
+        try (final var connection = DriverManager.getConnection("jdbc:h2:mem:copy-test", "sa", "")) {
+            assertEquals(
+                    "`copy-out` requires a PostgreSQL connection.",
+                    assertThrows(IllegalStateException.class, () -> CopyOut.copyManager(connection, "copy-out")).getMessage());
+        }
+    }
+}
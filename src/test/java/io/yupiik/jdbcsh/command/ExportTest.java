@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.jdbcsh.test.InMemoryIO;
+import io.yupiik.jdbcsh.test.JDBCshTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportTest {
+    @JDBCshTest(value = "export --to target/export-test/output.csv --query \"select id, name from test order by name desc\"", createDatabase = true)
+    void csv(final Supplier<InMemoryIO> io) throws IOException {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("Exported 2 rows to 'target/export-test/output.csv' in "), stdout);
+        assertEquals("ID,NAME\r\n0002,efgh\r\n0001,abcd\r\n", Files.readString(Path.of("target/export-test/output.csv")));
+    }
+
+    @JDBCshTest(value = "export --format jsonl --gzip true --to target/export-test/output.jsonl.gz --query \"select id, name from test order by name desc\"", createDatabase = true)
+    void gzip(final Supplier<InMemoryIO> io) throws IOException {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("Exported 2 rows to 'target/export-test/output.jsonl.gz' in "), stdout);
+        try (final var in = new GZIPInputStream(Files.newInputStream(Path.of("target/export-test/output.jsonl.gz")))) {
+            assertEquals("""
+                    {"ID":"0002","NAME":"efgh"}
+                    {"ID":"0001","NAME":"abcd"}
+                    """, new String(in.readAllBytes(), UTF_8));
+        }
+    }
+
+    @JDBCshTest(value = """
+            create table numbers(id bigint, name varchar(16))
+            insert into numbers(id, name) values (3, 'c'), (1, 'a'), (null, 'd'), (2, 'b'), (10, 'e')
+            export --query numbers --splitBy id --parallelism 2 --chunks 3 --to target/export-test/parallel.csv""", createDatabase = true)
+    void parallel(final Supplier<InMemoryIO> io) throws IOException {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("Exported 5 rows to 'target/export-test/parallel.csv' in "), stdout);
+        assertEquals("ID,NAME\r\n1,a\r\n2,b\r\n3,c\r\n10,e\r\n,d\r\n", Files.readString(Path.of("target/export-test/parallel.csv")));
+    }
+
+    @JDBCshTest(value = """
+            create table prices(id decimal(10, 1), name varchar(16))
+            insert into prices(id, name) values (3.2, 'c'), (0.5, 'a'), (10.7, 'e'), (2.9, 'b')
+            export --query prices --splitBy id --parallelism 2 --chunks 3 --to target/export-test/parallel-decimal.csv""", createDatabase = true)
+    void parallelDecimal(final Supplier<InMemoryIO> io) throws IOException {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("Exported 4 rows to 'target/export-test/parallel-decimal.csv' in "), stdout);
+        assertEquals("ID,NAME\r\n0.5,a\r\n2.9,b\r\n3.2,c\r\n10.7,e\r\n", Files.readString(Path.of("target/export-test/parallel-decimal.csv")));
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.jdbcsh.test.InMemoryIO;
+import io.yupiik.jdbcsh.test.JDBCshTest;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImportTest {
+    @JDBCshTest(value = """
+            import --table test --from src/test/resources/import.csv --batchSize 1 --commitInterval 1
+            select id, name from test order by id""", createDatabase = true)
+    void importCsv(final Supplier<InMemoryIO> io) {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("Imported 2 rows into 'test' in "), stdout);
+        assertTrue(stdout.contains("""
+                ----------------
+                | ID   | NAME  |
+                ----------------
+                | 0001 | abcd  |
+                | 0002 | efgh  |
+                | 0003 | ij,kl |
+                | 0004 |       |
+                ----------------
+                """), stdout);
+    }
+}
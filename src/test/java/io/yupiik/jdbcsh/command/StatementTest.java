@@ -18,16 +18,20 @@ package io.yupiik.jdbcsh.command;
 import io.yupiik.jdbcsh.test.InMemoryIO;
 import io.yupiik.jdbcsh.test.JDBCshTest;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class StatementTest {
     @JDBCshTest(value = "select id, name from test order by name desc", createDatabase = true)
     void execute(final Supplier<InMemoryIO> io) {
         assertEquals("""
                 Switched to connection 'test-h2'
-                Statement execution done in Xms
                 ---------------
                 | ID   | NAME |
                 ---------------
@@ -35,6 +39,7 @@ class StatementTest {
                 | 0001 | abcd |
                 ---------------
                                 
+                Statement execution done in Xms
                 """, io.get().stdout());
     }
 
@@ -43,7 +48,6 @@ class StatementTest {
         assertEquals("""
                 Switched to connection 'test-h2'
                 Switched table options.
-                Statement execution done in Xms
                 ---------------
                 |   ID | 0002 |
                 | NAME | efgh |
@@ -54,6 +58,95 @@ class StatementTest {
                 | NAME | abcd |
                 ---------------
                                 
+                Statement execution done in Xms
+                """, io.get().stdout());
+    }
+
+    @JDBCshTest(value = """
+            set-table-options --lookAheadRows 1
+            select id, case when id = '0001' then 'a-longer-name' else name end as name from test order by id desc""", createDatabase = true)
+    void executeStreamed(final Supplier<InMemoryIO> io) {
+        assertEquals("""
+                Switched to connection 'test-h2'
+                Switched table options.
+                ---------------
+                | ID   | NAME |
+                ---------------
+                | 0002 | efgh |
+                | 0001 | a-longer-name |
+                ---------------
+                                
+                Statement execution done in Xms
+                """, io.get().stdout());
+    }
+
+    @JDBCshTest(value = "--fetchSize 1 --maxRows 1 select id, name from test order by name desc", createDatabase = true)
+    void executeWithOptions(final Supplier<InMemoryIO> io) {
+        assertEquals("""
+                Switched to connection 'test-h2'
+                ---------------
+                | ID   | NAME |
+                ---------------
+                | 0002 | efgh |
+                ---------------
+                                
+                Statement execution done in Xms
+                """, io.get().stdout());
+    }
+
+    @JDBCshTest(value = "--format csv select id, name from test order by name desc", createDatabase = true)
+    void executeCsv(final Supplier<InMemoryIO> io) {
+        assertEquals("""
+                Switched to connection 'test-h2'
+                ID,NAME\r
+                0002,efgh\r
+                0001,abcd\r
+                """, io.get().stdout());
+    }
+
+    @JDBCshTest(value = """
+            set-table-options --format csv --output target/statement-test/output.csv
+            select id, name from test order by name desc""", createDatabase = true)
+    void executeCsvToFile(final Supplier<InMemoryIO> io) throws IOException {
+        assertEquals("""
+                Switched to connection 'test-h2'
+                Switched table options.
+                Statement execution done in Xms
+                """, io.get().stdout());
+        assertEquals("ID,NAME\r\n0002,efgh\r\n0001,abcd\r\n", Files.readString(Path.of("target/statement-test/output.csv")));
+    }
+
+    @JDBCshTest(value = "--format jsonl select id, name, 1 as one, cast(null as int) as nothing from test order by name desc", createDatabase = true)
+    void executeJsonLines(final Supplier<InMemoryIO> io) {
+        assertEquals("""
+                Switched to connection 'test-h2'
+                {"ID":"0002","NAME":"efgh","ONE":1,"NOTHING":null}
+                {"ID":"0001","NAME":"abcd","ONE":1,"NOTHING":null}
                 """, io.get().stdout());
     }
+
+    @JDBCshTest(value = "--on *-h2 --format csv select count(*) as total from information_schema.tables where table_name = 'TEST'",
+            createDatabase = true, rc = "src/test/resources/testrc.copy.json")
+    void executeOnSeveralConnections(final Supplier<InMemoryIO> io) {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("connection,TOTAL\r\n"), stdout);
+        assertTrue(stdout.contains("test-h2,1\r\n"), stdout);
+        assertTrue(stdout.contains("target-h2,0\r\n"), stdout);
+    }
+
+    @JDBCshTest(value = "--on 'test-*' --format csv select count(*) as total from information_schema.tables where table_name = 'TEST'",
+            createDatabase = true, rc = "src/test/resources/testrc.copy.json")
+    void executeOnQuotedConnections(final Supplier<InMemoryIO> io) {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("connection,TOTAL\r\n"), stdout);
+        assertTrue(stdout.contains("test-h2,1\r\n"), stdout);
+        assertFalse(stdout.contains("target-h2"), stdout);
+    }
+
+    @JDBCshTest(value = "--timing --format csv select * from test order by id", createDatabase = true)
+    void executeWithTimings(final Supplier<InMemoryIO> io) {
+        final var stderr = io.get().stderr();
+        assertTrue(stderr.matches("(?s)Statement execution done in \\d+ms\nTimings: connection=\\d+\\.\\d{3}ms \\(tunnel=\\d+\\.\\d{3}ms\\), execute=\\d+\\.\\d{3}ms, " +
+                "first row=\\d+\\.\\d{3}ms, fetch=\\d+\\.\\d{3}ms, render=\\d+\\.\\d{3}ms, rows=2, output=31 chars\n"), stderr);
+    }
 }
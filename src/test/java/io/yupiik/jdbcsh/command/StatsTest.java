@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.command;
+
+import io.yupiik.jdbcsh.test.InMemoryIO;
+import io.yupiik.jdbcsh.test.JDBCshTest;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatsTest {
+    @JDBCshTest(value = """
+            select * from test
+            select * from test where id = '0001'
+            set-table-options --format csv
+            stats --reset true
+            stats""", createDatabase = true)
+    void stats(final Supplier<InMemoryIO> io) {
+        final var stdout = io.get().stdout();
+        assertTrue(stdout.contains("type,name,count,errors,p50,p95,p99,max,rows,rendered\r\n"), stdout);
+        assertTrue(stdout.matches("(?s).*\r\nconnection,test-h2,2,0,\\d+\\.\\d{3},\\d+\\.\\d{3},\\d+\\.\\d{3},\\d+\\.\\d{3},3,\\d+\r\n.*"), stdout);
+        assertTrue(stdout.endsWith("Metrics reset.\nNo statement executed yet.\n"), stdout);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileChannelOutputStreamTest {
+    @Test
+    void plain(@TempDir final Path dir) throws IOException {
+        final var expected = content();
+        final var file = dir.resolve("sub/plain.csv");
+        try (final var out = new FileChannelOutputStream(file, 64)) { // small buffer to force intermediate writes
+            write(out, expected);
+            assertEquals(expected.length, out.count());
+            out.close();
+            assertEquals(expected.length, out.written());
+        }
+        assertArrayEquals(expected, Files.readAllBytes(file));
+    }
+
+    @Test
+    void gzip(@TempDir final Path dir) throws IOException {
+        final var expected = content();
+        final var file = dir.resolve("out.csv.gz");
+        final long written;
+        try (final var out = new FileChannelOutputStream(file, 64, true, 9)) {
+            write(out, expected);
+            out.close();
+            written = out.written();
+        }
+        assertEquals(Files.size(file), written);
+        assertTrue(written < expected.length, () -> written + " >= " + expected.length);
+        try (final var in = new GZIPInputStream(Files.newInputStream(file))) {
+            assertArrayEquals(expected, in.readAllBytes());
+        }
+    }
+
+    private void write(final FileChannelOutputStream out, final byte[] content) throws IOException {
+        out.write(content[0]);
+        out.write(content, 1, 100);
+        out.write(content, 101, content.length - 101);
+    }
+
+    private byte[] content() {
+        final var builder = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            builder.append(i).append(",name-").append(i).append("\r\n");
+        }
+        return builder.toString().getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.k8s;
+
+import io.yupiik.fusion.kubernetes.client.KubernetesClient;
+import io.yupiik.fusion.kubernetes.client.KubernetesClientConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// run with: mvn test -Dtest=LocalProxyBenchmark -Djdbcsh.benchmark=true
+@EnabledIfSystemProperty(named = "jdbcsh.benchmark", matches = "true")
+class LocalProxyBenchmark {
+    private static final long TOTAL = Long.getLong("jdbcsh.benchmark.bytes", 512L * 1024 * 1024);
+    private static final boolean ASYNC = Boolean.parseBoolean(System.getProperty("jdbcsh.benchmark.async", "true"));
+
+    @Test
+    void clientToWebSocket() throws Exception {
+        final var received = new AtomicLong();
+        try (final var proxy = new LocalProxy(
+                "localhost", 0,
+                new KubernetesClient(new KubernetesClientConfiguration().setMaster("http://localhost:-1/master")) {
+                    @Override
+                    public WebSocket.Builder newWebSocketBuilder() {
+                        return new CountingWebSocket(received);
+                    }
+                },
+                URI.create("ws://localhost:1234/benchmark"))) {
+            final var address = proxy.localAddress();
+            final var chunk = new byte[64 * 1024];
+            final long start = System.nanoTime();
+            try (final var client = new Socket(address.getAddress(), address.getPort())) {
+                final var out = client.getOutputStream();
+                long written = 0;
+                while (written < TOTAL) {
+                    final int length = (int) Math.min(chunk.length, TOTAL - written);
+                    out.write(chunk, 0, length);
+                    written += length;
+                }
+                out.flush();
+                final long timeout = System.nanoTime() + NANOSECONDS.convert(Duration.ofMinutes(1));
+                while (received.get() < TOTAL && System.nanoTime() < timeout) {
+                    Thread.sleep(1);
+                }
+            }
+            final long duration = System.nanoTime() - start;
+            assertEquals(TOTAL, received.get());
+            System.out.printf("[LocalProxyBenchmark] %d MB in %d ms => %.1f MB/s%n",
+                    TOTAL / (1024 * 1024), MILLISECONDS.convert(duration, NANOSECONDS),
+                    TOTAL / (1024. * 1024) / (duration / 1_000_000_000.));
+        }
+    }
+
+    private static class CountingWebSocket implements WebSocket.Builder, WebSocket {
+        private final AtomicLong received;
+
+        private CountingWebSocket(final AtomicLong received) {
+            this.received = received;
+        }
+
+        @Override
+        public WebSocket.Builder header(final String name, final String value) {
+            return this;
+        }
+
+        @Override
+        public WebSocket.Builder connectTimeout(final Duration timeout) {
+            return this;
+        }
+
+        @Override
+        public WebSocket.Builder subprotocols(final String mostPreferred, final String... lesserPreferred) {
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> buildAsync(final URI uri, final WebSocket.Listener listener) {
+            return completedFuture(this);
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendBinary(final ByteBuffer data, final boolean last) {
+            if (!ASYNC) {
+                received.addAndGet(data.remaining() - 1 /* channel byte */);
+                data.position(data.limit());
+                return completedFuture(this);
+            }
+            // like the JDK client, the buffer is consumed asynchronously
+            return CompletableFuture.supplyAsync(() -> {
+                received.addAndGet(data.remaining() - 1 /* channel byte */);
+                data.position(data.limit());
+                return this;
+            });
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendText(final CharSequence data, final boolean last) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendPing(final ByteBuffer message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendPong(final ByteBuffer message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendClose(final int statusCode, final String reason) {
+            return completedFuture(this);
+        }
+
+        @Override
+        public void request(final long n) {
+            // no-op
+        }
+
+        @Override
+        public String getSubprotocol() {
+            return "v4.channel.k8s.io";
+        }
+
+        @Override
+        public boolean isOutputClosed() {
+            return false;
+        }
+
+        @Override
+        public boolean isInputClosed() {
+            return false;
+        }
+
+        @Override
+        public void abort() {
+            // no-op
+        }
+    }
+}
@@ -17,7 +17,10 @@ package io.yupiik.jdbcsh.k8s;
 
 import io.yupiik.fusion.kubernetes.client.KubernetesClient;
 import io.yupiik.fusion.kubernetes.client.KubernetesClientConfiguration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.net.Socket;
@@ -25,11 +28,23 @@ import java.net.URI;
 import java.net.http.WebSocket;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.concurrent.TimeUnit.MINUTES;
@@ -88,6 +103,381 @@ class LocalProxyTest {
         }
     }
 
+    @Test
+    void concurrentClients() throws Exception {
+        final var webSockets = new AtomicInteger();
+        echo(64, new LocalProxy.Options(16 * 1024, 4, 1, false), webSockets);
+        assertEquals(64, webSockets.get());
+    }
+
+    @Test
+    void multiplexed() throws Exception {
+        final var webSockets = new AtomicInteger();
+        echo(16, new LocalProxy.Options(16 * 1024, 2, 4, false), webSockets);
+        assertEquals(4, webSockets.get());
+    }
+
+    @Test
+    void recordClientTraffic(@TempDir final Path work) throws Exception {
+        final var recording = work.resolve("proxy.jfr");
+        try (final var jfr = new Recording()) {
+            jfr.enable("io.yupiik.jdbcsh.TunnelClient");
+            jfr.start();
+            echo(2, new LocalProxy.Options(16 * 1024, 1, 1, false), new AtomicInteger());
+            jfr.stop();
+            jfr.dump(recording);
+        }
+
+        final var events = RecordingFile.readAllEvents(recording).stream()
+                .filter(it -> "io.yupiik.jdbcsh.TunnelClient".equals(it.getEventType().getName()))
+                .toList();
+        assertEquals(2, events.size());
+        for (final var event : events) {
+            assertEquals(256 * 1024, event.getLong("bytesOut"));
+            assertEquals(256 * 1024, event.getLong("bytesIn"));
+        }
+    }
+
+    @Test
+    void standby() throws Exception {
+        final var webSockets = new AtomicInteger();
+        final var greeting = "hi".getBytes(StandardCharsets.UTF_8);
+        try (final var proxy = new LocalProxy(
+                "localhost", 0,
+                new KubernetesClient(new KubernetesClientConfiguration()
+                        .setMaster("http://localhost:-1/master")) {
+                    @Override
+                    public WebSocket.Builder newWebSocketBuilder() {
+                        return new EchoWebSocket(webSockets, greeting);
+                    }
+                },
+                URI.create("ws://localhost:1234/test?ports=1234"),
+                new LocalProxy.Options(0, 1, 1, true))) {
+            awaitUntil(() -> webSockets.get() == 1); // opened before any client
+
+            final var server = proxy.localAddress();
+            for (int i = 0; i < 2; i++) {
+                try (final var client = new Socket(server.getAddress(), server.getPort())) {
+                    // the greeting was received before the client was accepted
+                    assertEquals("hi", new String(client.getInputStream().readNBytes(2), StandardCharsets.UTF_8));
+
+                    client.getOutputStream().write("ping".getBytes(StandardCharsets.UTF_8));
+                    client.getOutputStream().flush();
+                    assertEquals("ping", new String(client.getInputStream().readNBytes(4), StandardCharsets.UTF_8));
+                }
+                final int expected = i + 2;
+                awaitUntil(() -> webSockets.get() == expected); // next one is opened in background
+            }
+        }
+    }
+
+    @Test
+    void failedStreamIsNotReused() throws Exception {
+        final var webSockets = new CopyOnWriteArrayList<EchoWebSocket>();
+        try (final var proxy = newEchoProxy(webSockets, new LocalProxy.Options(0, 1, 2, true, -1))) {
+            awaitUntil(() -> webSockets.size() == 1 && webSockets.get(0).listener != null);
+            webSockets.get(0).error(0, "connection reset by peer"); // before any client uses it
+
+            final var server = proxy.localAddress();
+            try (final var client = new Socket(server.getAddress(), server.getPort())) {
+                client.setSoTimeout(10_000);
+                assertEquals("ping", ping(client));
+            }
+        }
+    }
+
+    @Test
+    void streamErrorClosesClient() throws Exception {
+        final var webSockets = new CopyOnWriteArrayList<EchoWebSocket>();
+        try (final var proxy = newEchoProxy(webSockets, new LocalProxy.Options(0, 1, 2, false, -1))) {
+            final var server = proxy.localAddress();
+            try (final var failing = new Socket(server.getAddress(), server.getPort())) {
+                failing.setSoTimeout(10_000);
+                assertEquals("ping", ping(failing));
+
+                webSockets.get(0).error(0, "connection reset by peer");
+                assertEquals(-1, failing.getInputStream().read());
+
+                try (final var other = new Socket(server.getAddress(), server.getPort())) { // second stream is still usable
+                    assertEquals("ping", ping(other));
+                }
+            }
+            assertEquals(1, webSockets.size());
+        }
+    }
+
+    @Test
+    void idleStreamsExpire() throws Exception {
+        final var webSockets = new CopyOnWriteArrayList<EchoWebSocket>();
+        try (final var proxy = newEchoProxy(webSockets, new LocalProxy.Options(0, 1, 2, false, 200))) {
+            final var server = proxy.localAddress();
+            try (final var first = new Socket(server.getAddress(), server.getPort())) {
+                assertEquals("ping", ping(first));
+                Thread.sleep(500); // second stream expires
+
+                try (final var second = new Socket(server.getAddress(), server.getPort())) {
+                    assertEquals("ping", ping(second));
+                }
+                assertEquals(2, webSockets.size());
+                assertFalse(webSockets.get(0).closed); // still used by the first client
+            }
+            awaitUntil(() -> webSockets.get(0).closed);
+        }
+    }
+
+    @Test
+    void slowPodResolutionDoesNotBlockOtherClients() throws Exception {
+        final var resolving = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var calls = new AtomicInteger();
+        final var uri = URI.create("ws://localhost:1234/test?ports=1234");
+        try (final var proxy = new LocalProxy(
+                "localhost", 0,
+                new KubernetesClient(new KubernetesClientConfiguration()
+                        .setMaster("http://localhost:-1/master")) {
+                    @Override
+                    public WebSocket.Builder newWebSocketBuilder() {
+                        return new EchoWebSocket(new AtomicInteger(), null);
+                    }
+                },
+                () -> {
+                    if (calls.incrementAndGet() == 1) { // first resolution lists the pods on a slow API server
+                        resolving.countDown();
+                        try {
+                            assertTrue(release.await(1, MINUTES));
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return uri;
+                },
+                new LocalProxy.Options(0, 1, 1, false));
+             final var slow = new Socket(proxy.localAddress().getAddress(), proxy.localAddress().getPort())) {
+            assertTrue(resolving.await(1, MINUTES));
+            try (final var other = new Socket(proxy.localAddress().getAddress(), proxy.localAddress().getPort())) {
+                other.setSoTimeout(10_000);
+                assertEquals("ping", ping(other));
+            } finally {
+                release.countDown();
+            }
+            slow.setSoTimeout(10_000);
+            assertEquals("ping", ping(slow));
+        }
+    }
+
+    private void awaitUntil(final BooleanSupplier condition) throws InterruptedException {
+        final long end = System.nanoTime() + MINUTES.toNanos(1);
+        while (!condition.getAsBoolean() && System.nanoTime() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private LocalProxy newEchoProxy(final Collection<EchoWebSocket> webSockets, final LocalProxy.Options options) throws IOException {
+        return new LocalProxy(
+                "localhost", 0,
+                new KubernetesClient(new KubernetesClientConfiguration()
+                        .setMaster("http://localhost:-1/master")) {
+                    @Override
+                    public WebSocket.Builder newWebSocketBuilder() {
+                        final var webSocket = new EchoWebSocket(new AtomicInteger(), null);
+                        webSockets.add(webSocket);
+                        return webSocket;
+                    }
+                },
+                URI.create("ws://localhost:1234/test?ports=1234"),
+                options);
+    }
+
+    private String ping(final Socket client) throws IOException {
+        client.getOutputStream().write("ping".getBytes(StandardCharsets.UTF_8));
+        client.getOutputStream().flush();
+        return new String(client.getInputStream().readNBytes(4), StandardCharsets.UTF_8);
+    }
+
+    private void echo(final int clients, final LocalProxy.Options options, final AtomicInteger webSockets) throws Exception {
+        final int bytesPerClient = 256 * 1024;
+        try (final var proxy = new LocalProxy(
+                "localhost", 0,
+                new KubernetesClient(new KubernetesClientConfiguration()
+                        .setMaster("http://localhost:-1/master")) {
+                    @Override
+                    public WebSocket.Builder newWebSocketBuilder() {
+                        return new EchoWebSocket(webSockets, null);
+                    }
+                },
+                URI.create("ws://localhost:1234/test?ports=1234"),
+                options);
+             final var workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            final var server = proxy.localAddress();
+            final var results = new ArrayList<Future<Boolean>>(clients);
+            for (int i = 0; i < clients; i++) {
+                final byte seed = (byte) i;
+                results.add(workers.submit(() -> {
+                    final var payload = new byte[bytesPerClient];
+                    for (int j = 0; j < payload.length; j++) {
+                        payload[j] = (byte) (seed + j);
+                    }
+                    try (final var client = new Socket(server.getAddress(), server.getPort())) {
+                        final var writer = workers.submit(() -> {
+                            client.getOutputStream().write(payload);
+                            client.getOutputStream().flush();
+                            return null;
+                        });
+                        final var echo = client.getInputStream().readNBytes(payload.length);
+                        writer.get(1, MINUTES);
+                        return Arrays.equals(payload, echo);
+                    }
+                }));
+            }
+            for (final var result : results) {
+                assertTrue(result.get(1, MINUTES));
+            }
+        }
+    }
+
+    // stand-in for the API server port-forward endpoint: it sends the port frames then echoes data frames respecting the demand
+    private static class EchoWebSocket implements WebSocket.Builder, WebSocket {
+        private final ExecutorService delivery = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+        private final Queue<byte[]> frames = new ArrayDeque<>(); // only used in delivery thread
+        private final BitSet failed = new BitSet(); // only used in delivery thread, streams not echoed anymore
+        private final AtomicInteger built;
+        private final byte[] greeting;
+        private volatile WebSocket.Listener listener;
+        private long demand;
+        private volatile boolean closed;
+
+        private EchoWebSocket(final AtomicInteger built, final byte[] greeting) {
+            this.built = built;
+            this.greeting = greeting;
+        }
+
+        @Override
+        public WebSocket.Builder header(final String name, final String value) {
+            return this;
+        }
+
+        @Override
+        public WebSocket.Builder connectTimeout(final Duration timeout) {
+            return this;
+        }
+
+        @Override
+        public WebSocket.Builder subprotocols(final String mostPreferred, final String... lesserPreferred) {
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> buildAsync(final URI uri, final WebSocket.Listener listener) {
+            this.listener = listener;
+            built.incrementAndGet();
+            final int streams = uri.getQuery().split("&").length;
+            delivery.execute(() -> {
+                listener.onOpen(this);
+                for (int i = 0; i < streams; i++) {
+                    frames.add(new byte[]{(byte) (2 * i), (byte) 0xD2, 0x04}); // data channel port
+                    frames.add(new byte[]{(byte) (2 * i + 1), (byte) 0xD2, 0x04}); // error channel port
+                }
+                if (greeting != null) { // server speaks first
+                    for (int i = 0; i < streams; i++) {
+                        final var frame = new byte[greeting.length + 1];
+                        frame[0] = (byte) (2 * i);
+                        System.arraycopy(greeting, 0, frame, 1, greeting.length);
+                        frames.add(frame);
+                    }
+                }
+                deliver();
+            });
+            return completedFuture(this);
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendBinary(final ByteBuffer data, final boolean last) {
+            final var bytes = new byte[data.remaining()];
+            data.get(bytes);
+            delivery.execute(() -> {
+                if (!failed.get(bytes[0] / 2)) {
+                    frames.add(bytes);
+                    deliver();
+                }
+            });
+            return completedFuture(this);
+        }
+
+        @Override
+        public void request(final long n) {
+            delivery.execute(() -> {
+                demand += n;
+                deliver();
+            });
+        }
+
+        // sends a message on the error channel of the stream and waits for the proxy to get it
+        private void error(final int stream, final String message) throws Exception {
+            final var error = message.getBytes(StandardCharsets.UTF_8);
+            final var frame = new byte[error.length + 1];
+            frame[0] = (byte) (2 * stream + 1);
+            System.arraycopy(error, 0, frame, 1, error.length);
+            delivery.execute(() -> {
+                failed.set(stream);
+                frames.add(frame);
+                deliver();
+            });
+            while (!delivery.submit(frames::isEmpty).get(1, MINUTES)) {
+                Thread.sleep(10);
+            }
+        }
+
+        private void deliver() {
+            while (demand > 0 && !frames.isEmpty()) {
+                demand--;
+                listener.onBinary(this, ByteBuffer.wrap(frames.poll()), true);
+            }
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendText(final CharSequence data, final boolean last) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendPing(final ByteBuffer message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendPong(final ByteBuffer message) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<WebSocket> sendClose(final int statusCode, final String reason) {
+            closed = true;
+            delivery.shutdown();
+            return completedFuture(this);
+        }
+
+        @Override
+        public String getSubprotocol() {
+            return "v4.channel.k8s.io";
+        }
+
+        @Override
+        public boolean isOutputClosed() {
+            return closed;
+        }
+
+        @Override
+        public boolean isInputClosed() {
+            return closed;
+        }
+
+        @Override
+        public void abort() {
+            // no-op
+        }
+    }
+
     private static class InMemoryWebSocket implements WebSocket.Builder, WebSocket {
         private final Runnable onAction;
         private String subprotocol;
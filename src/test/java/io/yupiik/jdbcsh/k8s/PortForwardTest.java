@@ -24,15 +24,18 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static java.util.Optional.empty;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PortForwardTest {
@@ -55,26 +58,82 @@ class PortForwardTest {
                 doRun(null, null, "database"));
     }
 
+    @Test
+    void cachedPod() throws IOException {
+        assertEquals( // second launch reuses the discovered pod
+                List.of("/api/v1/namespaces/ns/pods?limit=1000&labelSelector=app=junit"),
+                doRun(null, "tes", null, new PodCache(), 2, target -> {
+                }));
+    }
+
+    @Test
+    void refreshOnFailure() throws IOException {
+        assertEquals(
+                List.of(
+                        "/api/v1/namespaces/ns/pods?limit=1000&labelSelector=app=junit",
+                        "/api/v1/namespaces/ns/pods?limit=1000&labelSelector=app=junit"),
+                doRun(null, "tes", null, new PodCache(), 1, target -> assertFalse(target.refresh(target.uri())))); // same pod
+    }
+
+    @Test
+    void watchSurvivesPodDeletion() throws Exception {
+        final var requests = new ArrayList<String>();
+        final var mock = k8sMock(requests);
+        try {
+            final var k8sApi = "http://localhost:" + mock.getAddress().getPort();
+            final var forward = new PortForward(
+                    newConfiguration(null, "tes", null, k8sApi, true),
+                    "junit-connection",
+                    new JsonMapperImpl(List.of(), k -> empty()),
+                    new PodCache()) {
+                @Override
+                protected KubernetesClient newK8SClient() {
+                    return new KubernetesClient(new KubernetesClientConfiguration().setMaster(k8sApi));
+                }
+            };
+            try (final var ctx = forward.launch()) {
+                assertNotNull(ctx.watch());
+                final long end = System.nanoTime() + MINUTES.toNanos(1);
+                while (watches(requests) < 2 && System.nanoTime() < end) { // the first watch deletes the pod then ends
+                    Thread.sleep(50);
+                }
+                assertTrue(watches(requests) >= 2);
+            }
+        } finally {
+            mock.stop(0);
+        }
+    }
+
+    private long watches(final List<String> requests) {
+        synchronized (requests) {
+            return requests.stream().filter(it -> it.equals("/api/v1/namespaces/ns/pods?watch=true&labelSelector=app=junit")).count();
+        }
+    }
+
     private List<String> doRun(final String pod, final String podPrefix, final String service) throws IOException {
+        return doRun(pod, podPrefix, service, new PodCache(), 1, target -> {
+        });
+    }
+
+    private List<String> doRun(final String pod, final String podPrefix, final String service,
+                               final PodCache cache, final int launches,
+                               final Consumer<PortForwardTarget> onTarget) throws IOException {
         final var requests = new ArrayList<String>();
         final var mock = k8sMock(requests);
         final var success = new AtomicInteger(0);
         try {
             final var k8sApi = "http://localhost:" + mock.getAddress().getPort();
             final var forward = new PortForward(
-                    new KubernetesPortForwardConfiguration(
-                            null, null, null, null, "",
-                            false, k8sApi,
-                            1234,
-                            "localhost", 0,
-                            pod, podPrefix, service, "ns", "app=junit"),
+                    newConfiguration(pod, podPrefix, service, k8sApi),
                     "junit-connection",
-                    new JsonMapperImpl(List.of(), k -> empty())) {
+                    new JsonMapperImpl(List.of(), k -> empty()),
+                    cache) {
                 @Override
-                protected LocalProxy newLocalProxy(final KubernetesClient client, final URI uri) throws IOException {
-                    assertEquals("wss://kubernetes.api/api/v1/namespaces/ns/pods/test/portforward?ports=1234", uri.toASCIIString());
+                protected LocalProxy newLocalProxy(final KubernetesClient client, final PortForwardTarget target) throws IOException {
+                    assertEquals("wss://kubernetes.api/api/v1/namespaces/ns/pods/test/portforward?ports=1234", target.uri().toASCIIString());
+                    onTarget.accept(target);
                     success.incrementAndGet();
-                    return super.newLocalProxy(client, uri);
+                    return super.newLocalProxy(client, target);
                 }
 
                 @Override
@@ -82,18 +141,35 @@ class PortForwardTest {
                     return new KubernetesClient(new KubernetesClientConfiguration().setMaster(k8sApi));
                 }
             };
-            try (final var ctx = forward.launch()) {
-                assertNotEquals(0, ctx.proxy().localAddress().getPort());
-            } catch (final Exception e) {
-                throw new IllegalStateException(e);
+            for (int i = 0; i < launches; i++) {
+                try (final var ctx = forward.launch()) {
+                    assertNotEquals(0, ctx.proxy().localAddress().getPort());
+                } catch (final Exception e) {
+                    throw new IllegalStateException(e);
+                }
             }
-            assertEquals(1, success.get());
+            assertEquals(launches, success.get());
         } finally {
             mock.stop(0);
         }
         return requests;
     }
 
+    private KubernetesPortForwardConfiguration newConfiguration(final String pod, final String podPrefix, final String service,
+                                                                final String k8sApi) {
+        return newConfiguration(pod, podPrefix, service, k8sApi, false);
+    }
+
+    private KubernetesPortForwardConfiguration newConfiguration(final String pod, final String podPrefix, final String service,
+                                                                final String k8sApi, final boolean podWatch) {
+        return new KubernetesPortForwardConfiguration(
+                null, null, null, null, "",
+                false, k8sApi,
+                1234,
+                "localhost", 0,
+                pod, podPrefix, service, "ns", "app=junit", 0, 0, 0, 0, false, 0, 0, podWatch);
+    }
+
     private HttpServer k8sMock(final List<String> requests) throws IOException {
         final var server = HttpServer.create(new InetSocketAddress(0), 64);
         server.createContext("/").setHandler(ex -> {
@@ -108,7 +184,9 @@ class PortForwardTest {
             try (ex) {
                 switch (path) {
                     case "/api/v1/namespaces/ns/pods" -> {
-                        final var out = """
+                        final var out = uri.getQuery() != null && uri.getQuery().startsWith("watch=true") ? """
+                                {"type":"DELETED","object":{"metadata":{"name":"test"}}}
+                                """.getBytes(StandardCharsets.UTF_8) : """
                                 {
                                   "items":[
                                     {
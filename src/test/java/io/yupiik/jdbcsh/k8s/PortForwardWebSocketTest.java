@@ -27,16 +27,21 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class PortForwardWebSocketTest {
     @Test
     void test() {
         final var written = new ArrayList<byte[]>();
-        final var ws = new PortForwardWebSocket(newChannel(written), i -> {
+        final var ws = new PortForwardWebSocket(newChannel(written, new AtomicInteger(Integer.MAX_VALUE)), i -> {
         });
         final var requested = new AtomicInteger();
         final var websocket = newWebSocket(requested);
@@ -51,6 +56,129 @@ class PortForwardWebSocketTest {
         assertArrayEquals(new byte[]{3, 3, 3}, written.get(0));
     }
 
+    @Test
+    void backpressure() {
+        final var written = new ArrayList<byte[]>();
+        final var capacity = new AtomicInteger(2);
+        final var writePending = new AtomicInteger();
+        final var ws = new PortForwardWebSocket(newChannel(written, capacity), i -> {
+        }, 4, writePending::incrementAndGet);
+        final var requested = new AtomicInteger();
+        final var websocket = newWebSocket(requested);
+        ws.onBinary(websocket, ByteBuffer.wrap(new byte[]{0, 0, 0}), true);
+        ws.onBinary(websocket, ByteBuffer.wrap(new byte[]{0, 0, 0}), true);
+        assertEquals(2, requested.get());
+
+        // local client only accepts 2 bytes so 3 are queued, still under the limit
+        ws.onBinary(websocket, ByteBuffer.wrap(new byte[]{0, 1, 2, 3, 4, 5}), true);
+        assertEquals(1, writePending.get());
+        assertEquals(3, requested.get());
+
+        // queue is full (6 bytes > 4), stop requesting messages
+        ws.onBinary(websocket, ByteBuffer.wrap(new byte[]{0, 6, 7, 8}), true);
+        assertEquals(3, requested.get());
+
+        capacity.set(4);
+        assertTrue(ws.onWritable());
+        assertEquals(4, requested.get()); // back under the limit
+
+        capacity.set(Integer.MAX_VALUE);
+        assertFalse(ws.onWritable());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}, written.stream()
+                .reduce(new byte[0], (a, b) -> {
+                    final var out = new byte[a.length + b.length];
+                    System.arraycopy(a, 0, out, 0, a.length);
+                    System.arraycopy(b, 0, out, a.length, b.length);
+                    return out;
+                }));
+    }
+
+    @Test
+    void forwardWhileDraining() throws InterruptedException {
+        final int frames = 2_000;
+        final int frameSize = 16;
+        final var written = new ArrayList<byte[]>();
+        final var capacity = new AtomicInteger();
+        final var writeInterest = new AtomicBoolean(); // OP_WRITE
+        final var ws = new PortForwardWebSocket(newChannel(written, capacity), i -> {
+        }, 4 * frameSize, () -> writeInterest.set(true));
+        final var requested = new AtomicInteger();
+        final var websocket = newWebSocket(requested);
+        final var done = new AtomicBoolean();
+
+        final var selector = Thread.ofPlatform().start(() -> { // mimics the proxy event loop
+            while (!done.get()) {
+                capacity.set(7); // socket accepts a few bytes each time it is writable
+                if (writeInterest.get()) {
+                    ws.onWritable(() -> writeInterest.set(false));
+                } else {
+                    Thread.yield();
+                }
+            }
+        });
+        try {
+            ws.onBinary(websocket, ByteBuffer.wrap(new byte[]{0, 0, 0}), true);
+            ws.onBinary(websocket, ByteBuffer.wrap(new byte[]{0, 0, 0}), true);
+            final var frame = new byte[frameSize + 1];
+            for (int i = 0; i < frames; i++) {
+                final long timeout = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (requested.get() < i + 2) { // wait for the next message to be requested
+                    assertTrue(System.nanoTime() < timeout, () -> "next message not requested, " +
+                            "queued data is no longer drained (OP_WRITE=" + writeInterest.get() + ")");
+                    Thread.yield();
+                }
+                ws.onBinary(websocket, ByteBuffer.wrap(frame), true);
+            }
+
+            final long timeout = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (size(written) < frames * frameSize) {
+                assertTrue(System.nanoTime() < timeout, "queued data is no longer drained");
+                Thread.yield();
+            }
+        } finally {
+            done.set(true);
+            selector.join();
+        }
+        assertEquals(frames * frameSize, size(written));
+    }
+
+    @Test
+    void forwardDuringDrainKeepsWriteInterest() throws InterruptedException {
+        final var written = new ArrayList<byte[]>();
+        final var capacity = new AtomicInteger(Integer.MAX_VALUE);
+        final var writeInterest = new AtomicBoolean(); // OP_WRITE
+        final var ws = new PortForwardWebSocket(newChannel(written, capacity), i -> {
+        }, Long.MAX_VALUE, () -> writeInterest.set(true));
+        final var websocket = newWebSocket(new AtomicInteger());
+        ws.onBinary(websocket, ByteBuffer.wrap(new byte[]{0, 0, 0}), true);
+        ws.onBinary(websocket, ByteBuffer.wrap(new byte[]{0, 0, 0}), true);
+
+        // the websocket thread forwards while the selector thread handles the drained notification
+        final var forwarder = new AtomicReference<Thread>();
+        assertFalse(ws.onWritable(() -> {
+            capacity.set(0); // socket is full again
+            forwarder.set(Thread.ofPlatform().start(() -> ws.onBinary(websocket, ByteBuffer.wrap(new byte[]{0, 1, 2}), true)));
+            try {
+                forwarder.get().join(200); // can't complete before the interest is cleared
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeInterest.set(false);
+        }));
+        forwarder.get().join();
+        assertTrue(writeInterest.get(), "queued data must keep OP_WRITE");
+
+        capacity.set(Integer.MAX_VALUE);
+        assertFalse(ws.onWritable());
+        assertEquals(2, size(written));
+    }
+
+    private long size(final List<byte[]> written) {
+        synchronized (written) {
+            return written.stream().mapToLong(b -> b.length).sum();
+        }
+    }
+
     private WebSocket newWebSocket(final AtomicInteger requested) {
         return new WebSocket() {
             @Override
@@ -105,11 +233,15 @@ class PortForwardWebSocketTest {
         };
     }
 
-    private SocketChannel newChannel(final List<byte[]> written) {
+    private SocketChannel newChannel(final List<byte[]> written, final AtomicInteger capacity) {
         return new SocketChannel(null) {
             @Override
             public int write(final ByteBuffer src) {
-                final var bytes = new byte[src.remaining()];
+                final var bytes = new byte[Math.min(capacity.get(), src.remaining())];
+                if (bytes.length == 0) {
+                    return 0;
+                }
+                capacity.addAndGet(-bytes.length);
                 synchronized (written) {
                     src.get(bytes);
                     written.add(bytes);
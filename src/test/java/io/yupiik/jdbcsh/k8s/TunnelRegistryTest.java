@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.k8s;
+
+import io.yupiik.fusion.json.internal.JsonMapperImpl;
+import io.yupiik.fusion.kubernetes.client.KubernetesClient;
+import io.yupiik.fusion.kubernetes.client.KubernetesClientConfiguration;
+import io.yupiik.jdbcsh.configuration.KubernetesPortForwardConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Optional.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class TunnelRegistryTest {
+    @Test
+    void shared() throws Exception {
+        final var launched = new AtomicInteger();
+        try (final var registry = new TunnelRegistry((conf, name) -> newPortForward(conf, name, launched))) {
+            final var configuration = newConfiguration(60_000);
+            final int port;
+            try (final var first = registry.acquire(configuration, "first");
+                 final var second = registry.acquire(configuration, "second")) {
+                port = first.proxy().localAddress().getPort();
+                assertEquals(port, second.proxy().localAddress().getPort());
+            }
+            try (final var third = registry.acquire(configuration, "third")) { // still in idle timeout window
+                assertEquals(port, third.proxy().localAddress().getPort());
+            }
+            assertEquals(1, launched.get());
+        }
+    }
+
+    @Test
+    void closeWhenUnused() throws Exception {
+        final var launched = new AtomicInteger();
+        try (final var registry = new TunnelRegistry((conf, name) -> newPortForward(conf, name, launched))) {
+            final var configuration = newConfiguration(-1);
+            final int port;
+            try (final var first = registry.acquire(configuration, "first")) {
+                port = first.proxy().localAddress().getPort();
+            }
+            try (final var second = registry.acquire(configuration, "second")) {
+                assertNotEquals(0, second.proxy().localAddress().getPort());
+            }
+            assertNotEquals(0, port);
+            assertEquals(2, launched.get());
+        }
+    }
+
+    private KubernetesPortForwardConfiguration newConfiguration(final long idleTimeout) {
+        return new KubernetesPortForwardConfiguration(
+                null, null, null, null, "",
+                false, "http://localhost:-1/master",
+                1234,
+                "localhost", 0,
+                "test", null, null, "ns", null, idleTimeout, 0, 0, 0, false, 0, 0, false);
+    }
+
+    private PortForward newPortForward(final KubernetesPortForwardConfiguration configuration, final String name,
+                                       final AtomicInteger launched) {
+        return new PortForward(configuration, name, new JsonMapperImpl(List.of(), k -> empty())) {
+            @Override
+            protected LocalProxy newLocalProxy(final KubernetesClient client, final PortForwardTarget target) throws IOException {
+                launched.incrementAndGet();
+                return super.newLocalProxy(client, target);
+            }
+
+            @Override
+            protected KubernetesClient newK8SClient() {
+                return new KubernetesClient(new KubernetesClientConfiguration().setMaster(configuration.api()));
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.launcher;
+
+import io.yupiik.fusion.json.internal.JsonMapperImpl;
+import io.yupiik.jdbcsh.command.error.CommandExecutionException;
+import io.yupiik.jdbcsh.service.State;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Optional.empty;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandRunnerTest {
+    @Test
+    void cancelRunningStatement() throws Exception {
+        try (final var connection = DriverManager.getConnection("jdbc:h2:mem:cancel")) {
+            assertCancellable(connection);
+        }
+    }
+
+    @Test
+    void cancelRunningRemoteStatement() throws Exception { // over a socket the connection must survive the cancellation
+        final var server = Server.createTcpServer("-tcpPort", "0", "-ifNotExists").start();
+        try (final var connection = DriverManager.getConnection("jdbc:h2:tcp://localhost:" + server.getPort() + "/mem:cancel-remote")) {
+            assertCancellable(connection);
+            assertCancellable(connection); // still cancellable
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void assertCancellable(final Connection connection) throws Exception {
+        final var state = new State(new JsonMapperImpl(List.of(), k -> empty()));
+        final var stderr = new ByteArrayOutputStream();
+        try (final var runner = new CommandRunner(state, new PrintStream(stderr, true, UTF_8))) {
+            final var started = new CountDownLatch(1);
+            final var error = new AtomicReference<Throwable>();
+            final var canceller = Thread.ofPlatform().start(() -> {
+                try {
+                    assertTrue(started.await(1, MINUTES));
+                    Thread.sleep(200); // let the query start
+                    while (!runner.cancel()) {
+                        Thread.sleep(10);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            final boolean completed = runner.execute(() -> {
+                try (final var stmt = connection.createStatement()) {
+                    state.running(stmt);
+                    started.countDown();
+                    try {
+                        stmt.executeQuery("select max(rand()) from system_range(1, 100000000000)");
+                    } finally {
+                        state.done(stmt);
+                    }
+                } catch (final SQLException e) {
+                    error.set(e);
+                    throw new CommandExecutionException(e);
+                }
+            });
+            canceller.join();
+
+            assertFalse(completed);
+            assertInstanceOf(SQLException.class, error.get());
+            assertEquals("Cancelling 1 running statement(s)...\nCommand cancelled.\n", stderr.toString(UTF_8).replace("\r\n", "\n"));
+
+            // connection is still usable
+            assertFalse(connection.isClosed());
+            try (final var stmt = connection.createStatement();
+                 final var rset = stmt.executeQuery("select 1")) {
+                assertTrue(rset.next());
+                assertEquals(1, rset.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void propagateFailures() {
+        final var state = new State(new JsonMapperImpl(List.of(), k -> empty()));
+        try (final var runner = new CommandRunner(state, new PrintStream(new ByteArrayOutputStream(), true, UTF_8))) {
+            assertTrue(runner.execute(() -> {
+            }));
+            assertFalse(runner.cancel()); // nothing running
+            assertEquals("failed", assertThrows(IllegalStateException.class, () -> runner.execute(() -> {
+                throw new IllegalStateException("failed");
+            })).getMessage());
+        }
+    }
+}
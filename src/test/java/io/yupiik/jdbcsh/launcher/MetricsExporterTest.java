@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.launcher;
+
+import io.yupiik.jdbcsh.metrics.Metrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsExporterTest {
+    @Test
+    void exportAtExit(@TempDir final Path work) throws Exception {
+        final var metrics = new Metrics();
+        final var file = work.resolve("out/metrics.txt");
+        try (final var exporter = new MetricsExporter(metrics, file, 0, 0);
+             final var client = HttpClient.newHttpClient()) {
+            metrics.onCommand("statement", 1_000_000, true);
+
+            final var response = client.send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + exporter.port() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode());
+            assertEquals("application/openmetrics-text; version=1.0.0; charset=utf-8", response.headers().firstValue("content-type").orElseThrow());
+            assertTrue(response.body().contains("jdbcsh_command_duration_seconds_count{command=\"statement\"} 1\n"), response.body());
+            assertTrue(response.body().endsWith("# EOF\n"), response.body());
+            assertFalse(Files.exists(file)); // written at exit
+
+            metrics.onCommand("statement", 1_000_000, false);
+        }
+
+        final var content = Files.readString(file);
+        assertTrue(content.contains("jdbcsh_command_duration_seconds_count{command=\"statement\"} 2\n"), content);
+        assertTrue(content.contains("jdbcsh_command_errors_total{command=\"statement\"} 1\n"), content);
+        assertTrue(content.endsWith("# EOF\n"), content);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void percentiles() {
+        final var histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10_000, histogram.count());
+        assertEquals(10_000, histogram.max());
+        assertNear(5_000, histogram.percentile(50));
+        assertNear(9_500, histogram.percentile(95));
+        assertNear(9_900, histogram.percentile(99));
+        assertEquals(10_000, histogram.percentile(100));
+    }
+
+    @Test
+    void precision() {
+        final var random = new SplittableRandom(1234);
+        for (int i = 0; i < 100_000; i++) {
+            final long value = random.nextLong(1L << 42);
+            final long highest = LatencyHistogram.highestEquivalentValue(LatencyHistogram.index(value));
+            assertTrue(highest >= value && highest - value <= value / 32, () -> value + " => " + highest);
+        }
+        for (int i = 0; i < 64; i++) { // exact for small values
+            assertEquals(i, LatencyHistogram.highestEquivalentValue(LatencyHistogram.index(i)));
+        }
+    }
+
+    @Test
+    void outOfRange() {
+        final var histogram = new LatencyHistogram();
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals((1L << 42) - 1, histogram.max());
+    }
+
+    private void assertNear(final long expected, final long actual) {
+        assertTrue(Math.abs(expected - actual) <= expected / 32, () -> "expected ~" + expected + " but got " + actual);
+    }
+}
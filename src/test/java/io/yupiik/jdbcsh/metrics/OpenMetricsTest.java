@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OpenMetricsTest {
+    @Test
+    void empty() {
+        assertEquals("# EOF\n", OpenMetrics.toText(new Metrics()));
+    }
+
+    @Test
+    void text() {
+        final var metrics = new Metrics();
+        metrics.onStatement("pg", "users", 2_000_000, 10, 120, true);
+        metrics.onStatement("pg", null, 4_000_000, 0, 0, false);
+        metrics.onStatement("my \"db\"\\\n", null, 1_000_000, 1, 2, true);
+        metrics.onCommand("statement", 5_000_000, true);
+        metrics.onConnectionAcquisition("pg", 30_000_000, true);
+        metrics.tunnel("pg");
+        assertEquals("""
+                # TYPE jdbcsh_statement_duration_seconds summary
+                # UNIT jdbcsh_statement_duration_seconds seconds
+                # HELP jdbcsh_statement_duration_seconds Statement execution duration.
+                jdbcsh_statement_duration_seconds{connection="my \\"db\\"\\\\\\n",quantile="0.5"} 0.001000
+                jdbcsh_statement_duration_seconds{connection="my \\"db\\"\\\\\\n",quantile="0.95"} 0.001000
+                jdbcsh_statement_duration_seconds{connection="my \\"db\\"\\\\\\n",quantile="0.99"} 0.001000
+                jdbcsh_statement_duration_seconds_sum{connection="my \\"db\\"\\\\\\n"} 0.001000
+                jdbcsh_statement_duration_seconds_count{connection="my \\"db\\"\\\\\\n"} 1
+                jdbcsh_statement_duration_seconds{connection="pg",quantile="0.5"} 0.002015
+                jdbcsh_statement_duration_seconds{connection="pg",quantile="0.95"} 0.004000
+                jdbcsh_statement_duration_seconds{connection="pg",quantile="0.99"} 0.004000
+                jdbcsh_statement_duration_seconds_sum{connection="pg"} 0.006000
+                jdbcsh_statement_duration_seconds_count{connection="pg"} 2
+                # TYPE jdbcsh_statement_errors counter
+                # HELP jdbcsh_statement_errors Failed statements.
+                jdbcsh_statement_errors_total{connection="my \\"db\\"\\\\\\n"} 0
+                jdbcsh_statement_errors_total{connection="pg"} 1
+                # TYPE jdbcsh_statement_rows counter
+                # HELP jdbcsh_statement_rows Fetched or updated rows.
+                jdbcsh_statement_rows_total{connection="my \\"db\\"\\\\\\n"} 1
+                jdbcsh_statement_rows_total{connection="pg"} 10
+                # TYPE jdbcsh_statement_rendered_chars counter
+                # HELP jdbcsh_statement_rendered_chars Chars written by the formatters.
+                jdbcsh_statement_rendered_chars_total{connection="my \\"db\\"\\\\\\n"} 2
+                jdbcsh_statement_rendered_chars_total{connection="pg"} 120
+                # TYPE jdbcsh_alias_duration_seconds summary
+                # UNIT jdbcsh_alias_duration_seconds seconds
+                # HELP jdbcsh_alias_duration_seconds Statement alias execution duration.
+                jdbcsh_alias_duration_seconds{alias="users",quantile="0.5"} 0.002000
+                jdbcsh_alias_duration_seconds{alias="users",quantile="0.95"} 0.002000
+                jdbcsh_alias_duration_seconds{alias="users",quantile="0.99"} 0.002000
+                jdbcsh_alias_duration_seconds_sum{alias="users"} 0.002000
+                jdbcsh_alias_duration_seconds_count{alias="users"} 1
+                # TYPE jdbcsh_alias_errors counter
+                # HELP jdbcsh_alias_errors Failed statement alias executions.
+                jdbcsh_alias_errors_total{alias="users"} 0
+                # TYPE jdbcsh_command_duration_seconds summary
+                # UNIT jdbcsh_command_duration_seconds seconds
+                # HELP jdbcsh_command_duration_seconds Command execution duration.
+                jdbcsh_command_duration_seconds{command="statement",quantile="0.5"} 0.005000
+                jdbcsh_command_duration_seconds{command="statement",quantile="0.95"} 0.005000
+                jdbcsh_command_duration_seconds{command="statement",quantile="0.99"} 0.005000
+                jdbcsh_command_duration_seconds_sum{command="statement"} 0.005000
+                jdbcsh_command_duration_seconds_count{command="statement"} 1
+                # TYPE jdbcsh_command_errors counter
+                # HELP jdbcsh_command_errors Failed commands.
+                jdbcsh_command_errors_total{command="statement"} 0
+                # TYPE jdbcsh_connection_acquisition_duration_seconds summary
+                # UNIT jdbcsh_connection_acquisition_duration_seconds seconds
+                # HELP jdbcsh_connection_acquisition_duration_seconds Time to get a connection (pool, creation, tunnel).
+                jdbcsh_connection_acquisition_duration_seconds{connection="pg",quantile="0.5"} 0.030000
+                jdbcsh_connection_acquisition_duration_seconds{connection="pg",quantile="0.95"} 0.030000
+                jdbcsh_connection_acquisition_duration_seconds{connection="pg",quantile="0.99"} 0.030000
+                jdbcsh_connection_acquisition_duration_seconds_sum{connection="pg"} 0.030000
+                jdbcsh_connection_acquisition_duration_seconds_count{connection="pg"} 1
+                # TYPE jdbcsh_connection_acquisition_errors counter
+                # HELP jdbcsh_connection_acquisition_errors Failed connection acquisitions.
+                jdbcsh_connection_acquisition_errors_total{connection="pg"} 0
+                # TYPE jdbcsh_tunnel_clients counter
+                # HELP jdbcsh_tunnel_clients Local clients accepted by the kubernetes tunnels.
+                jdbcsh_tunnel_clients_total{connection="pg"} 0
+                # TYPE jdbcsh_tunnel_received_bytes counter
+                # UNIT jdbcsh_tunnel_received_bytes bytes
+                # HELP jdbcsh_tunnel_received_bytes Bytes received from the pods.
+                jdbcsh_tunnel_received_bytes_total{connection="pg"} 0
+                # TYPE jdbcsh_tunnel_sent_bytes counter
+                # UNIT jdbcsh_tunnel_sent_bytes bytes
+                # HELP jdbcsh_tunnel_sent_bytes Bytes sent to the pods.
+                jdbcsh_tunnel_sent_bytes_total{connection="pg"} 0
+                # EOF
+                """, OpenMetrics.toText(metrics));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.service;
+
+import io.yupiik.jdbcsh.configuration.ConnectionPoolConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConnectionPoolTest {
+    @Test
+    void reuse() throws Exception {
+        final var created = new AtomicInteger();
+        try (final var pool = new ConnectionPool("junit", new ConnectionPoolConfiguration(0, 1, 0, 0, 0), () -> newConnection(created))) {
+            final java.sql.Connection first;
+            try (final var connection = pool.borrow()) {
+                first = connection.connection();
+            }
+            assertEquals(1, pool.idleCount());
+            try (final var connection = pool.borrow()) {
+                assertSame(first, connection.connection());
+                try (final var other = pool.borrow()) { // idle pool is empty so a new one is created
+                    assertNotSame(first, other.connection());
+                }
+            }
+            assertEquals(2, created.get());
+            assertEquals(1, pool.idleCount()); // maxIdle
+        }
+    }
+
+    @Test
+    void validateOnBorrow() throws Exception {
+        final var created = new AtomicInteger();
+        try (final var pool = new ConnectionPool("junit", new ConnectionPoolConfiguration(0, 1, 0, 0, 0), () -> newConnection(created))) {
+            final java.sql.Connection first;
+            try (final var connection = pool.borrow()) {
+                first = connection.connection();
+            }
+            first.close(); // simulate a broken connection
+            try (final var connection = pool.borrow()) {
+                assertNotSame(first, connection.connection());
+                assertTrue(connection.connection().isValid(1));
+            }
+            assertEquals(2, created.get());
+        }
+    }
+
+    @Test
+    void maxLifetime() throws Exception {
+        final var created = new AtomicInteger();
+        try (final var pool = new ConnectionPool("junit", new ConnectionPoolConfiguration(0, 1, 0, 1, 0), () -> newConnection(created))) {
+            try (final var connection = pool.borrow()) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, pool.idleCount());
+        }
+    }
+
+    private State.CloseableConnection newConnection(final AtomicInteger counter) {
+        try {
+            counter.incrementAndGet();
+            final var connection = DriverManager.getConnection("jdbc:h2:mem:pool", "sa", "");
+            return new State.CloseableConnection(connection, connection);
+        } catch (final SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
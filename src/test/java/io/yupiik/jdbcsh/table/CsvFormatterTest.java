@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvFormatterTest {
+    @Test
+    void csv() {
+        final var out = new StringBuilder();
+        try (final var formatter = RowFormatter.of(List.of("ID", "NAME"), new TableFormatter.TableOptions(false, "-", 1000, "csv", null), null, out)) {
+            formatter.add(List.of("0001", "abcd"));
+            formatter.add(List.of("0002", ""));
+        }
+        assertEquals("ID,NAME\r\n0001,abcd\r\n0002,\r\n", out.toString());
+    }
+
+    @Test
+    void quoting() {
+        final var out = new StringBuilder();
+        try (final var formatter = new CsvFormatter(List.of("a", "b,c"), out)) {
+            formatter.add(List.of("say \"hi\"", "multi\nline"));
+            formatter.add(List.of("cr\r", "plain"));
+        }
+        assertEquals("a,\"b,c\"\r\n\"say \"\"hi\"\"\",\"multi\nline\"\r\n\"cr\r\",plain\r\n", out.toString());
+    }
+
+    @Test
+    void format() {
+        assertTrue(RowFormatter.of(List.of("a"), new TableFormatter.TableOptions(false, "-", 1000), null, new StringBuilder()) instanceof StreamingTableFormatter);
+        assertThrows(IllegalArgumentException.class, () -> new TableFormatter.TableOptions(false, "-", 1000, "xml", null));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvParserTest {
+    @Test
+    void parse() throws IOException {
+        assertEquals(
+                List.of(List.of("a", "b,c"), List.of("say \"hi\"", "multi\nline"), List.of("", "last")),
+                parse("a,\"b,c\"\r\n\"say \"\"hi\"\"\",\"multi\nline\"\n,last", 4));
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        final var rows = List.of(List.of("ID", "NAME"), List.of("1", "with \"quotes\", commas\r\nand lines"), List.of("2", ""));
+        final var out = new StringBuilder();
+        try (final var formatter = new CsvFormatter(rows.get(0), out)) {
+            rows.subList(1, rows.size()).forEach(formatter::add);
+        }
+        assertEquals(rows, parse(out.toString(), 3));
+    }
+
+    @Test
+    void unterminatedQuote() {
+        assertThrows(IllegalStateException.class, () -> parse("a,\"b\n", 16));
+    }
+
+    private List<List<String>> parse(final String csv, final int bufferSize) throws IOException {
+        final var rows = new ArrayList<List<String>>();
+        try (final var parser = new CsvParser(new StringReader(csv), bufferSize)) { // small buffer to cross boundaries
+            List<String> row;
+            while ((row = parser.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import io.yupiik.fusion.json.internal.JsonMapperImpl;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Optional.empty;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class JsonFormatterTest {
+    private final JsonMapperImpl mapper = new JsonMapperImpl(List.of(), k -> empty());
+
+    @Test
+    void jsonLines() {
+        assertEquals("""
+                {"ID":1,"NAME":"abcd","SCORE":1.5,"ACTIVE":true}
+                {"ID":2,"NAME":null,"SCORE":12345678901234567890.1,"ACTIVE":false}
+                """, render("jsonl"));
+    }
+
+    @Test
+    void array() {
+        assertEquals("""
+                [
+                {"ID":1,"NAME":"abcd","SCORE":1.5,"ACTIVE":true},
+                {"ID":2,"NAME":null,"SCORE":12345678901234567890.1,"ACTIVE":false}
+                ]
+                """, render("json"));
+    }
+
+    @Test
+    void emptyArray() {
+        final var out = new StringBuilder();
+        new JsonFormatter(List.of("ID"), mapper, true, out).close();
+        assertEquals("[]\n", out.toString());
+    }
+
+    @Test
+    void abortedArrayIsNotClosed() {
+        final var out = new StringBuilder();
+        try (final var formatter = new JsonFormatter(List.of("ID"), mapper, true, out)) {
+            formatter.add(List.of(1));
+            formatter.abort();
+        }
+        assertEquals("[\n{\"ID\":1}\n", out.toString());
+
+        final var empty = new StringBuilder();
+        try (final var formatter = new JsonFormatter(List.of("ID"), mapper, true, empty)) {
+            formatter.abort();
+        }
+        assertEquals("", empty.toString());
+    }
+
+    @Test
+    void duplicatedColumns() {
+        final var out = new StringBuilder();
+        try (final var formatter = new JsonFormatter(List.of("ID", "ID", "quote\""), mapper, false, out)) {
+            formatter.add(List.of(1L, 2L, "a\"b"));
+        }
+        assertEquals("{\"ID\":1,\"ID_2\":2,\"quote\\\"\":\"a\\\"b\"}\n", out.toString());
+    }
+
+    private String render(final String format) {
+        final var out = new StringBuilder();
+        try (final var formatter = RowFormatter.of(
+                List.of("ID", "NAME", "SCORE", "ACTIVE"), new TableFormatter.TableOptions(false, "-", 1000, format, null), mapper, out)) {
+            formatter.add(List.of(1, "abcd", 1.5d, true));
+            formatter.add(Arrays.asList(2L, null, new BigDecimal("12345678901234567890.1"), false));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingTableFormatterTest {
+    @Test
+    void table() {
+        final var out = new StringBuilder();
+        try (final var formatter = new StreamingTableFormatter(List.of("id", "name"), new TableFormatter.TableOptions(false, "-", 1), out)) {
+            formatter.add(List.of("0001", "abcd"));
+            formatter.add(List.of("2", "efgh"));
+        }
+        assertEquals("""
+                ---------------
+                | id   | name |
+                ---------------
+                | 0001 | abcd |
+                | 2    | efgh |
+                ---------------
+
+                """, out.toString());
+    }
+
+    @Test
+    void abortedTableHasNoFooter() {
+        for (final int lookAheadRows : new int[]{1, 1000}) { // streamed and still buffered rows
+            final var out = new StringBuilder();
+            try (final var formatter = new StreamingTableFormatter(List.of("id", "name"), new TableFormatter.TableOptions(false, "-", lookAheadRows), out)) {
+                formatter.add(List.of("0001", "abcd"));
+                formatter.add(List.of("2", "efgh"));
+                formatter.abort();
+            }
+            assertEquals("""
+                    ---------------
+                    | id   | name |
+                    ---------------
+                    | 0001 | abcd |
+                    | 2    | efgh |
+                    """, out.toString());
+        }
+    }
+}
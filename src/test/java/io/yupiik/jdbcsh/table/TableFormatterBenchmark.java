@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import io.yupiik.jdbcsh.io.ChunkedWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// run with: mvn test -Dtest=TableFormatterBenchmark -Djdbcsh.benchmark=true
+@EnabledIfSystemProperty(named = "jdbcsh.benchmark", matches = "true")
+class TableFormatterBenchmark {
+    private static final int ITERATIONS = Integer.getInteger("jdbcsh.benchmark.iterations", 10);
+
+    @Test
+    void tall() {
+        run("tall", table(100_000, 5), false);
+    }
+
+    @Test
+    void wide() {
+        run("wide", table(1_000, 200), false);
+    }
+
+    @Test
+    void transposed() {
+        run("transposed", table(20_000, 20), true);
+    }
+
+    @Test
+    void tallStreamed() {
+        run("tall streamed", table(100_000, 5), false, true);
+    }
+
+    @Test
+    void transposedStreamed() {
+        run("transposed streamed", table(20_000, 20), true, true);
+    }
+
+    private void run(final String name, final List<List<String>> rows, final boolean transpose) {
+        run(name, rows, transpose, false);
+    }
+
+    private void run(final String name, final List<List<String>> rows, final boolean transpose, final boolean streamed) {
+        final var options = new TableFormatter.TableOptions(transpose, "-", 0);
+        final var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long dataSize = rows.stream().flatMap(List::stream).mapToLong(String::length).sum();
+
+        long length = 0;
+        for (int i = 0; i < ITERATIONS; i++) { // warmup
+            length += render(rows, options, streamed);
+        }
+
+        final long allocatedStart = threads.getCurrentThreadAllocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            length += render(rows, options, streamed);
+        }
+        final long duration = System.nanoTime() - start;
+        final long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedStart;
+        assertTrue(length > 0);
+
+        System.out.printf("[TableFormatterBenchmark] %s: %d ms/op, %.1f MB allocated/op (%.1f x data size)%n",
+                name, MILLISECONDS.convert(duration / ITERATIONS, NANOSECONDS),
+                allocated / (double) ITERATIONS / (1024 * 1024), allocated / (double) ITERATIONS / dataSize);
+    }
+
+    private long render(final List<List<String>> rows, final TableFormatter.TableOptions options, final boolean streamed) {
+        if (!streamed) {
+            return new TableFormatter(rows, options).toString().length();
+        }
+        final var counter = new AtomicLong();
+        try (final var writer = new ChunkedWriter(new OutputStream() {
+            @Override
+            public void write(final int b) {
+                counter.incrementAndGet();
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                counter.addAndGet(len);
+            }
+        }, UTF_8, 64 * 1024)) {
+            new TableFormatter(rows, options).render(writer);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return counter.get();
+    }
+
+    private List<List<String>> table(final int rows, final int columns) {
+        final var out = new ArrayList<List<String>>(rows + 1);
+        out.add(IntStream.range(0, columns).mapToObj(i -> "column_" + i).toList());
+        for (int r = 0; r < rows; r++) {
+            final int row = r;
+            out.add(IntStream.range(0, columns).mapToObj(c -> Integer.toString(row * 31 + c * 7, 36)).toList());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2023-present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.jdbcsh.table;
+
+import io.yupiik.jdbcsh.io.ChunkedWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TableFormatterTest {
+    private static final List<List<String>> ROWS = List.of(
+            List.of("id", "name"),
+            List.of("0001", "abcd"),
+            List.of("2", "a-longer-name"));
+
+    @Test
+    void table() {
+        assertEquals("""
+                ------------------------
+                | id   | name          |
+                ------------------------
+                | 0001 | abcd          |
+                | 2    | a-longer-name |
+                ------------------------
+                """, new TableFormatter(ROWS, new TableFormatter.TableOptions(false, "-", 0)).toString());
+    }
+
+    @Test
+    void tableWithoutSeparator() {
+        assertEquals("""
+
+                | id   | name          |
+                | 0001 | abcd          |
+                | 2    | a-longer-name |
+                """, new TableFormatter(ROWS, new TableFormatter.TableOptions(false, "", 0)).toString());
+    }
+
+    @Test
+    void transposed() {
+        assertEquals("""
+                ---------------
+                |   id | 0001 |
+                | name | abcd |
+                ---------------
+
+                ------------------------
+                |   id |             2 |
+                | name | a-longer-name |
+                ------------------------
+                """, new TableFormatter(ROWS, new TableFormatter.TableOptions(true, "-", 0)).toString());
+    }
+
+    @Test
+    void renderByChunks() throws IOException {
+        for (final boolean transpose : new boolean[]{false, true}) {
+            final var formatter = new TableFormatter(ROWS, new TableFormatter.TableOptions(transpose, "-", 0));
+            final var out = new ByteArrayOutputStream();
+            try (final var writer = new ChunkedWriter(out, UTF_8, 8)) { // smaller than a line
+                formatter.render(writer);
+            }
+            assertEquals(formatter.toString(), out.toString(UTF_8));
+        }
+    }
+
+    @Test
+    void empty() {
+        assertEquals("", new TableFormatter(List.of(), new TableFormatter.TableOptions(false, "-", 0)).toString());
+    }
+}